@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.platzhaltr.readr.functions.AddPrefixFunction;
+import com.platzhaltr.readr.functions.MultiReplaceFunction;
+import com.platzhaltr.readr.functions.RemovePrefixFunction;
+import com.platzhaltr.readr.functions.ReplaceFunction;
+import com.platzhaltr.readr.functions.TrimFunction;
+import com.platzhaltr.readr.functions.TrimLeftFunction;
+import com.platzhaltr.readr.functions.TrimRightFunction;
+
+/**
+ * Measures each function on a batch of lines. The marked lines are the ones
+ * the function changes, for the trim functions they are padded with
+ * whitespace. The score is the time per batch of {@value #LINES} lines.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionBenchmark {
+
+	/** The Constant LINES. */
+	private static final int LINES = 1000;
+
+	/** The function. */
+	@Param({ "Trim", "TrimLeft", "TrimRight", "Replace", "MultiReplace",
+			"RemovePrefix", "AddPrefix" })
+	public String function;
+
+	/** The distribution of the line lengths. */
+	@Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+	public SyntheticLines.Lengths lengths;
+
+	/** The ratio of lines without markers. */
+	@Param({ "0.5", "0.9", "0.99" })
+	public double keepRatio;
+
+	/** The function under test. */
+	private Function<String, String> instance;
+
+	/** The lines. */
+	private String[] lines;
+
+	/**
+	 * Creates the function and the lines.
+	 */
+	@Setup
+	public void setUp() {
+		instance = newFunction(function);
+
+		final boolean pad = function.startsWith("Trim");
+		final List<String> list = SyntheticLines.generate(LINES, lengths,
+				keepRatio);
+		lines = new String[list.size()];
+		for (int i = 0; i < lines.length; i++) {
+			final String line = list.get(i);
+			lines[i] = pad && line.contains(SyntheticLines.DROP_NEEDLE) ? "  \t"
+					+ line + "\t  "
+					: line;
+		}
+	}
+
+	/**
+	 * Creates a function changing the marked lines.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the function
+	 */
+	static Function<String, String> newFunction(final String name) {
+		if (name.equals("Trim")) {
+			return new TrimFunction();
+		} else if (name.equals("TrimLeft")) {
+			return new TrimLeftFunction();
+		} else if (name.equals("TrimRight")) {
+			return new TrimRightFunction();
+		} else if (name.equals("Replace")) {
+			return new ReplaceFunction(SyntheticLines.DROP_NEEDLE, "thread");
+		} else if (name.equals("MultiReplace")) {
+			return new MultiReplaceFunction(ImmutableMap.of(
+					SyntheticLines.DROP_NEEDLE, "thread", "pin", "nail",
+					"yarn", "wool", "tape", "glue"));
+		} else if (name.equals("RemovePrefix")) {
+			return new RemovePrefixFunction(SyntheticLines.DROP_PREFIX);
+		} else if (name.equals("AddPrefix")) {
+			return new AddPrefixFunction("> ");
+		}
+		throw new IllegalArgumentException("Unknown function " + name);
+	}
+
+	/**
+	 * Applies the function to all lines.
+	 *
+	 * @param blackhole
+	 *            the blackhole
+	 */
+	@Benchmark
+	public void apply(final Blackhole blackhole) {
+		for (final String line : lines) {
+			blackhole.consume(instance.apply(line));
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.platzhaltr.readr.MogrifiedReaderMaker;
+
+/**
+ * Measures whole pipelines built by {@link MogrifiedReaderMaker}, reading a
+ * text through {@link MogrifiedReaderMaker#wrap(Reader)} or, for UTF-8 input,
+ * {@link MogrifiedReaderMaker#wrapStream(InputStream)}. The score is the time
+ * per text of {@value #LINES} lines, including compiling the pipeline.
+ *
+ * Pipelines have the given number of mogrifiers, half of them predicates and
+ * half functions. Grouped pipelines add all predicates, then all functions,
+ * alternating pipelines switch after every mogrifier. Only the first
+ * predicate of each kind drops lines, the others scan the line in vain.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	/** The Constant LINES. */
+	private static final int LINES = 10000;
+
+	/** The order of predicates and functions. */
+	public enum Shape {
+
+		/** All predicates, then all functions. */
+		GROUPED,
+
+		/** Predicates and functions alternate. */
+		ALTERNATING
+	}
+
+	/** The number of mogrifiers. */
+	@Param({ "2", "4", "8", "16" })
+	public int depth;
+
+	/** The shape. */
+	@Param({ "GROUPED", "ALTERNATING" })
+	public Shape shape;
+
+	/** The distribution of the line lengths. */
+	@Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+	public SyntheticLines.Lengths lengths;
+
+	/** The ratio of lines kept. */
+	@Param({ "0.5", "0.9", "0.99" })
+	public double keepRatio;
+
+	/** The maker. */
+	private MogrifiedReaderMaker maker;
+
+	/** The text. */
+	private String text;
+
+	/** The UTF-8 encoded text. */
+	private byte[] bytes;
+
+	/** The read buffer. */
+	private final char[] charBuffer = new char[8192];
+
+	/** The read buffer for UTF-8 input. */
+	private final byte[] byteBuffer = new byte[8192];
+
+	/**
+	 * Creates the maker and the text.
+	 */
+	@Setup
+	public void setUp() {
+		maker = new MogrifiedReaderMaker();
+		final int half = depth / 2;
+		for (int i = 0; i < depth; i++) {
+			final boolean predicate = shape == Shape.GROUPED ? i < half
+					: i % 2 == 0;
+			final int index = shape == Shape.GROUPED ? i % half : i / 2;
+			if (predicate) {
+				addPredicate(index);
+			} else {
+				addFunction(index);
+			}
+		}
+
+		text = SyntheticLines.join(SyntheticLines.generate(LINES, lengths,
+				keepRatio));
+		bytes = text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Adds the predicate of the given index, cycling through the kinds of
+	 * predicates.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	private void addPredicate(final int index) {
+		final String suffix = index < 4 ? "" : Integer.toString(index);
+		switch (index % 4) {
+		case 0:
+			maker.omitLines().containing(SyntheticLines.DROP_NEEDLE + suffix);
+			break;
+		case 1:
+			maker.omitLines().startingWith(SyntheticLines.DROP_PREFIX + suffix);
+			break;
+		case 2:
+			maker.omitLines().endingWith(suffix + SyntheticLines.DROP_SUFFIX);
+			break;
+		default:
+			maker.omitLines().matching(".*ne+dle" + suffix + ".*");
+			break;
+		}
+	}
+
+	/**
+	 * Adds the function of the given index, cycling through the kinds of
+	 * functions.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	private void addFunction(final int index) {
+		switch (index % 4) {
+		case 0:
+			maker.trimRight();
+			break;
+		case 1:
+			maker.transformLines().byReplacing("abc", "cba");
+			break;
+		case 2:
+			maker.transformLines().byRemovingPrefix("a");
+			break;
+		default:
+			maker.trim();
+			break;
+		}
+	}
+
+	/**
+	 * Reads the text through the pipeline.
+	 *
+	 * @return the number of chars read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long wrap() throws IOException {
+		final Reader reader = maker.wrap(new StringReader(text));
+		long total = 0;
+		int read;
+		while ((read = reader.read(charBuffer)) != -1) {
+			total += read;
+		}
+		reader.close();
+		return total;
+	}
+
+	/**
+	 * Reads the UTF-8 encoded text through the pipeline.
+	 *
+	 * @return the number of bytes read
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public long wrapStream() throws IOException {
+		final InputStream in = maker.wrapStream(new ByteArrayInputStream(
+				bytes));
+		long total = 0;
+		int read;
+		while ((read = in.read(byteBuffer)) != -1) {
+			total += read;
+		}
+		in.close();
+		return total;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.platzhaltr.readr.io.ByteLine;
+import com.platzhaltr.readr.predicates.ContainingAnyPredicate;
+import com.platzhaltr.readr.predicates.ContainingPredicate;
+import com.platzhaltr.readr.predicates.EmptyPredicate;
+import com.platzhaltr.readr.predicates.EndingWithPredicate;
+import com.platzhaltr.readr.predicates.MatchingAnyPredicate;
+import com.platzhaltr.readr.predicates.MatchingPredicate;
+import com.platzhaltr.readr.predicates.StartingWithAnyPredicate;
+import com.platzhaltr.readr.predicates.StartingWithPredicate;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
+
+/**
+ * Measures each predicate on a batch of lines, both on chars and on UTF-8
+ * encoded lines. The score is the time per batch of {@value #LINES} lines.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+
+	/** The Constant LINES. */
+	private static final int LINES = 1000;
+
+	/** The predicate. */
+	@Param({ "Empty", "StartingWith", "EndingWith", "Containing",
+			"Matching", "StartingWithAny", "ContainingAny", "MatchingAny" })
+	public String predicate;
+
+	/** The distribution of the line lengths. */
+	@Param({ "SHORT", "MEDIUM", "LONG", "MIXED" })
+	public SyntheticLines.Lengths lengths;
+
+	/** The ratio of lines kept. */
+	@Param({ "0.5", "0.9", "0.99" })
+	public double keepRatio;
+
+	/** The predicate on chars. */
+	private Predicate<CharSequence> charPredicate;
+
+	/** The predicate on UTF-8 encoded lines. */
+	private Utf8Predicate utf8Predicate;
+
+	/** The lines. */
+	private String[] lines;
+
+	/** The encoded lines. */
+	private byte[][] encodedLines;
+
+	/** The line window. */
+	private final ByteLine byteLine = new ByteLine();
+
+	/**
+	 * Creates the predicate and the lines.
+	 */
+	@Setup
+	public void setUp() {
+		final Object object = newPredicate(predicate);
+		@SuppressWarnings("unchecked")
+		final Predicate<CharSequence> casted = (Predicate<CharSequence>) object;
+		charPredicate = casted;
+		utf8Predicate = (Utf8Predicate) object;
+
+		final List<String> list = SyntheticLines.generate(LINES, lengths,
+				keepRatio);
+		lines = list.toArray(new String[list.size()]);
+		encodedLines = new byte[lines.length][];
+		for (int i = 0; i < lines.length; i++) {
+			encodedLines[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Creates a predicate dropping the marked lines. The predicates on several
+	 * patterns get three patterns that never match in addition.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the predicate
+	 */
+	static Object newPredicate(final String name) {
+		if (name.equals("Empty")) {
+			return new EmptyPredicate();
+		} else if (name.equals("StartingWith")) {
+			return new StartingWithPredicate(SyntheticLines.DROP_PREFIX);
+		} else if (name.equals("EndingWith")) {
+			return new EndingWithPredicate(SyntheticLines.DROP_SUFFIX);
+		} else if (name.equals("Containing")) {
+			return new ContainingPredicate(SyntheticLines.DROP_NEEDLE);
+		} else if (name.equals("Matching")) {
+			return new MatchingPredicate(".*ne+dle.*");
+		} else if (name.equals("StartingWithAny")) {
+			return new StartingWithAnyPredicate(ImmutableList.of("//", "--",
+					";", SyntheticLines.DROP_PREFIX));
+		} else if (name.equals("ContainingAny")) {
+			return new ContainingAnyPredicate(ImmutableList.of("thread",
+					"needles", "pin", SyntheticLines.DROP_NEEDLE));
+		} else if (name.equals("MatchingAny")) {
+			return new MatchingAnyPredicate(ImmutableList.of(".*th?read.*",
+					".*pins?.*", "[0-9]+", ".*ne+dle.*"));
+		}
+		throw new IllegalArgumentException("Unknown predicate " + name);
+	}
+
+	/**
+	 * Tests all lines as chars.
+	 *
+	 * @return the number of lines dropped
+	 */
+	@Benchmark
+	public int apply() {
+		int dropped = 0;
+		for (final String line : lines) {
+			if (charPredicate.apply(line)) {
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Tests all lines on their UTF-8 encoding.
+	 *
+	 * @return the number of lines dropped
+	 */
+	@Benchmark
+	public int applyUtf8() {
+		int dropped = 0;
+		for (final byte[] line : encodedLines) {
+			byteLine.set(line, 0, line.length);
+			if (utf8Predicate.applyUtf8(byteLine)) {
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Generates synthetic input for the benchmarks. Lines consist of words over
+ * the letters <code>a</code> to <code>k</code>, so they never contain the
+ * markers of the lines to drop by accident.
+ *
+ * A line to drop starts with {@link #DROP_PREFIX}, contains
+ * {@link #DROP_NEEDLE} and ends with {@link #DROP_SUFFIX}, so each kind of
+ * predicate drops the same lines. The input is the same for the same
+ * parameters.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public final class SyntheticLines {
+
+	/** The Constant DROP_PREFIX. */
+	public static final String DROP_PREFIX = "#";
+
+	/** The Constant DROP_NEEDLE. */
+	public static final String DROP_NEEDLE = "needle";
+
+	/** The Constant DROP_SUFFIX. */
+	public static final String DROP_SUFFIX = ";";
+
+	/** The Constant SEED. */
+	private static final long SEED = 42;
+
+	/**
+	 * The distribution of the line lengths.
+	 */
+	public enum Lengths {
+
+		/** Lines of about 20 chars. */
+		SHORT,
+
+		/** Lines of about 80 chars. */
+		MEDIUM,
+
+		/** Lines of about 400 chars. */
+		LONG,
+
+		/** Mostly short lines, with one in ten long. */
+		MIXED;
+
+		/**
+		 * Picks the length of the next line.
+		 *
+		 * @param random
+		 *            the random
+		 * @return the length
+		 */
+		int next(final Random random) {
+			switch (this) {
+			case SHORT:
+				return 10 + random.nextInt(20);
+			case MEDIUM:
+				return 40 + random.nextInt(80);
+			case LONG:
+				return 200 + random.nextInt(400);
+			default:
+				return random.nextInt(10) == 0 ? LONG.next(random) : SHORT
+						.next(random);
+			}
+		}
+	}
+
+	/**
+	 * Instantiates a new synthetic lines.
+	 */
+	private SyntheticLines() {
+	}
+
+	/**
+	 * Generates lines.
+	 *
+	 * @param count
+	 *            the number of lines
+	 * @param lengths
+	 *            the distribution of the line lengths
+	 * @param keepRatio
+	 *            the ratio of lines without drop markers, between 0 and 1
+	 * @return the lines
+	 */
+	public static List<String> generate(final int count,
+			final Lengths lengths, final double keepRatio) {
+		final Random random = new Random(SEED);
+		final List<String> lines = Lists.newArrayListWithCapacity(count);
+		final StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < count; i++) {
+			builder.setLength(0);
+			final int length = lengths.next(random);
+			while (builder.length() < length) {
+				if (builder.length() > 0) {
+					builder.append(' ');
+				}
+				final int wordLength = 1 + random.nextInt(8);
+				for (int j = 0; j < wordLength; j++) {
+					builder.append((char) ('a' + random.nextInt(11)));
+				}
+			}
+
+			if (random.nextDouble() >= keepRatio) {
+				builder.insert(random.nextInt(builder.length() + 1), ' '
+						+ DROP_NEEDLE + ' ');
+				builder.insert(0, DROP_PREFIX);
+				builder.append(DROP_SUFFIX);
+			}
+			lines.add(builder.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * Joins the lines into a text, each line terminated by a line feed.
+	 *
+	 * @param lines
+	 *            the lines
+	 * @return the text
+	 */
+	public static String join(final List<String> lines) {
+		final StringBuilder builder = new StringBuilder();
+		for (final String line : lines) {
+			builder.append(line).append('\n');
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The summary of processing a batch of files, see
+ * {@link Pipeline#processDirectory(Path, String, Path, int)}. Files are
+ * processed independently, so a failing file does not stop the others; its
+ * exception is recorded here. Safe to update from several threads.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class BatchResult {
+
+	/** The files processed successfully. */
+	private final List<Path> succeeded = Collections.synchronizedList(Lists
+			.<Path> newArrayList());
+
+	/** The exceptions by failed file. */
+	private final Map<Path, Exception> failures = Collections
+			.synchronizedMap(Maps.<Path, Exception> newLinkedHashMap());
+
+	/** The number of lines written. */
+	private final AtomicLong linesWritten = new AtomicLong();
+
+	/**
+	 * Records a file processed successfully.
+	 *
+	 * @param file
+	 *            the file
+	 * @param lines
+	 *            the number of lines written
+	 */
+	void succeeded(final Path file, final long lines) {
+		succeeded.add(file);
+		linesWritten.addAndGet(lines);
+	}
+
+	/**
+	 * Records a failed file.
+	 *
+	 * @param file
+	 *            the file
+	 * @param exception
+	 *            the exception
+	 */
+	void failed(final Path file, final Exception exception) {
+		failures.put(file, exception);
+	}
+
+	/**
+	 * Gets the files processed successfully.
+	 *
+	 * @return the files
+	 */
+	public List<Path> getSucceeded() {
+		synchronized (succeeded) {
+			return ImmutableList.copyOf(succeeded);
+		}
+	}
+
+	/**
+	 * Gets the exceptions by failed file.
+	 *
+	 * @return the failures
+	 */
+	public Map<Path, Exception> getFailures() {
+		synchronized (failures) {
+			return ImmutableMap.copyOf(failures);
+		}
+	}
+
+	/**
+	 * Gets the number of lines written for all successful files.
+	 *
+	 * @return the lines written
+	 */
+	public long getLinesWritten() {
+		return linesWritten.get();
+	}
+
+	/**
+	 * Checks if all files were processed successfully.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "BatchResult [succeeded=" + succeeded.size() + ", failed="
+				+ failures.size() + ", linesWritten=" + linesWritten + "]";
+	}
+
+}
@@ -17,28 +17,54 @@ package com.platzhaltr.readr;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.platzhaltr.readr.functions.ByteLineFunction;
 import com.platzhaltr.readr.functions.ChainFunction;
+import com.platzhaltr.readr.functions.CharSequenceFunction;
+import com.platzhaltr.readr.functions.DecodingFunction;
+import com.platzhaltr.readr.functions.MultiReplaceFunction;
+import com.platzhaltr.readr.functions.OmittingPredicateFunction;
 import com.platzhaltr.readr.functions.RemovePrefixFunction;
 import com.platzhaltr.readr.functions.ReplaceFunction;
 import com.platzhaltr.readr.functions.TrimFunction;
 import com.platzhaltr.readr.functions.TrimLeftFunction;
 import com.platzhaltr.readr.functions.TrimRightFunction;
-import com.platzhaltr.readr.io.FunctionFilterReader;
-import com.platzhaltr.readr.io.PredicateFilterReader;
+import com.platzhaltr.readr.functions.Utf8Function;
+import com.platzhaltr.readr.functions.Utf8OmittingPredicateFunction;
+import com.platzhaltr.readr.io.ByteLine;
+import com.platzhaltr.readr.io.FileFollower;
+import com.platzhaltr.readr.io.LineListener;
+import com.platzhaltr.readr.metrics.Instrumentation;
+import com.platzhaltr.readr.metrics.PipelineStats;
+import com.platzhaltr.readr.predicates.AdaptiveOrPredicate;
+import com.platzhaltr.readr.predicates.ContainingAnyPredicate;
 import com.platzhaltr.readr.predicates.ContainingPredicate;
 import com.platzhaltr.readr.predicates.EmptyPredicate;
 import com.platzhaltr.readr.predicates.EndingWithPredicate;
+import com.platzhaltr.readr.predicates.MatchingAnyPredicate;
 import com.platzhaltr.readr.predicates.MatchingPredicate;
+import com.platzhaltr.readr.predicates.StartingWithAnyPredicate;
 import com.platzhaltr.readr.predicates.StartingWithPredicate;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
 
 /**
  * The Class MogrifiedReaderMaker.
@@ -47,9 +73,21 @@ import com.platzhaltr.readr.predicates.StartingWithPredicate;
  */
 public class MogrifiedReaderMaker {
 
+	/**
+	 * The minimum number of needles, prefixes or replacements in a group for
+	 * which an automaton is built.
+	 */
+	private static final int MIN_PATTERNS_FOR_AUTOMATON = 4;
+
 	/** The stack. */
 	private final Stack<Mogrifier> stack = new Stack<Mogrifier>();
 
+	/** If <code>true</code>, omitting predicates are reordered at runtime. */
+	private boolean adaptivePredicateOrder;
+
+	/** If <code>true</code>, the mogrifiers are optimized when compiled. */
+	private boolean optimize;
+
 	/** The omit lines builder. */
 	private final OmitLinesBuilder omitLinesBuilder;
 
@@ -74,6 +112,32 @@ public class MogrifiedReaderMaker {
 		return this;
 	}
 
+	/**
+	 * Lets consecutive omitting predicates reorder themselves at runtime, so
+	 * that cheap predicates that apply often are tested first, regardless of
+	 * the order they were added in. The lines returned stay the same.
+	 *
+	 * @return the mogrified reader maker
+	 * @see AdaptiveOrPredicate
+	 */
+	public MogrifiedReaderMaker adaptPredicateOrder() {
+		adaptivePredicateOrder = true;
+		return this;
+	}
+
+	/**
+	 * Optimizes the mogrifiers when compiling them, rewriting them into
+	 * cheaper ones that return the same lines. The rewrites applied are
+	 * reported by {@link Pipeline#getRewrites()}.
+	 *
+	 * @return the mogrified reader maker
+	 * @see PipelineOptimizer
+	 */
+	public MogrifiedReaderMaker optimize() {
+		optimize = true;
+		return this;
+	}
+
 	/**
 	 * Trim lines.
 	 *
@@ -128,7 +192,7 @@ public class MogrifiedReaderMaker {
 	 * @param predicate
 	 *            the predicate
 	 */
-	private void add(final Predicate<String> predicate) {
+	private void add(final Predicate<CharSequence> predicate) {
 		stack.add(new Mogrifier(predicate, Mogrifier.Type.PREDICATE));
 	}
 
@@ -143,91 +207,275 @@ public class MogrifiedReaderMaker {
 	}
 
 	/**
-	 * Builds the.
+	 * Compiles the mogrifiers into a {@link Pipeline}. The maker is left
+	 * unchanged, so it can be compiled again, also after adding more
+	 * mogrifiers.
 	 *
-	 * @param reader
-	 *            the reader
-	 * @return the reader
+	 * @return the pipeline
 	 */
-	public Reader wrap(final Reader reader) {
-		if (!stack.isEmpty()) {
-			final Mogrifier pop = stack.pop();
-			final List<Object> objects = Lists.newLinkedList();
-			objects.add(pop.getObject());
-			return wrap(objects, pop.getType(), reader);
+	public Pipeline compile() {
+		return compile(null);
+	}
+
+	/**
+	 * Compiles the mogrifiers into a {@link Pipeline} that records into the
+	 * given stats. Every predicate and function counts the lines it sees,
+	 * drops and changes and the time it takes. Predicates and replacements
+	 * are not merged into automata then, so each one keeps its own counters.
+	 * Without stats nothing is recorded and the pipeline is the same as from
+	 * {@link #compile()}.
+	 *
+	 * @param stats
+	 *            the stats, or <code>null</code>
+	 * @return the pipeline
+	 * @see PipelineStats#register(javax.management.ObjectName)
+	 */
+	public Pipeline compile(final PipelineStats stats) {
+		final List<String> rewrites = Lists.newArrayList();
+		List<Mogrifier> mogrifiers = Lists.reverse(stack);
+		final String fingerprint = PipelineFingerprint.of(mogrifiers);
+		if (optimize) {
+			mogrifiers = PipelineOptimizer.optimize(mogrifiers, rewrites);
+		}
+		if (mogrifiers.isEmpty()) {
+			return new Pipeline(null, null, rewrites, fingerprint);
 		}
 
-		return reader;
+		if (stats != null) {
+			mogrifiers = instrument(mogrifiers, stats);
+		}
+
+		final List<List<Mogrifier>> groups = getGroups(mogrifiers);
+		Function<CharSequence, CharSequence> pipeline = buildPipeline(groups);
+		Function<ByteLine, ByteLine> utf8Pipeline = buildUtf8Pipeline(groups);
+		if (stats != null) {
+			pipeline = Instrumentation.instrumentPipeline(pipeline, stats);
+			utf8Pipeline = Instrumentation.instrumentPipeline(utf8Pipeline,
+					stats);
+		}
+		return new Pipeline(pipeline, utf8Pipeline, rewrites, fingerprint);
 	}
 
 	/**
-	 * Wrap.
+	 * Compiles the mogrifiers and wraps the given reader.
 	 *
-	 * @param objects
-	 *            the objects
-	 * @param lastType
-	 *            the last type
 	 * @param reader
 	 *            the reader
 	 * @return the reader
+	 * @see Pipeline#wrap(Reader)
 	 */
-	@SuppressWarnings("resource")
-	private Reader wrap(final List<Object> objects, Mogrifier.Type lastType,
-			Reader reader) {
+	public Reader wrap(final Reader reader) {
+		return compile().wrap(reader);
+	}
 
-		while (!stack.empty()) {
-			final Mogrifier pop = stack.pop();
+	/**
+	 * Compiles the mogrifiers and wraps the given UTF-8 encoded input stream.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @return the input stream
+	 * @see Pipeline#wrapStream(InputStream)
+	 */
+	public InputStream wrapStream(final InputStream in) {
+		return compile().wrapStream(in);
+	}
+
+	/**
+	 * Groups consecutive mogrifiers of the same type.
+	 *
+	 * @param mogrifiers
+	 *            the mogrifiers, in the order they are applied, i.e. from the
+	 *            top of the stack down
+	 * @return the groups
+	 */
+	private static List<List<Mogrifier>> getGroups(
+			final List<Mogrifier> mogrifiers) {
+		final List<List<Mogrifier>> groups = Lists.newLinkedList();
+		List<Mogrifier> group = null;
+
+		for (final Mogrifier mogrifier : mogrifiers) {
 
 			// the new mogrifier is not from the same type
-			if (!pop.getType().equals(lastType)) {
+			if (group == null
+					|| !mogrifier.getType().equals(group.get(0).getType())) {
+				group = Lists.newLinkedList();
+				groups.add(group);
+			}
+
+			group.add(mogrifier);
+		}
+
+		return groups;
+	}
+
+	/**
+	 * Builds the pipeline by compiling the mogrifier stack into a chain of
+	 * functions. A function of the chain returning <code>null</code> omits the
+	 * line.
+	 *
+	 * @param groups
+	 *            the groups of mogrifiers
+	 * @return the function
+	 */
+	private Function<CharSequence, CharSequence> buildPipeline(
+			final List<List<Mogrifier>> groups) {
+		final List<Function<CharSequence, CharSequence>> stages = Lists
+				.newLinkedList();
 
-				// add predicates
-				if (lastType.equals(Mogrifier.Type.PREDICATE)) {
-					reader = buildPredicateReader(objects, reader);
+		for (final List<Mogrifier> group : groups) {
+			final List<Object> objects = getObjects(group);
+
+			// add predicates
+			if (group.get(0).getType().equals(Mogrifier.Type.PREDICATE)) {
+				stages.add(buildPredicateFunction(compilePredicates(objects)));
+			}
+
+			// functions
+			else {
+				stages.add(buildFunction(objects));
+			}
+		}
+
+		return chain(stages);
+	}
+
+	/**
+	 * Builds the pipeline for UTF-8 encoded lines. Mogrifiers that cannot work
+	 * on the encoded line are wrapped in a {@link DecodingFunction}, combining
+	 * consecutive ones so that a line is decoded at most once for them.
+	 *
+	 * @param groups
+	 *            the groups of mogrifiers
+	 * @return the function
+	 */
+	private Function<ByteLine, ByteLine> buildUtf8Pipeline(
+			final List<List<Mogrifier>> groups) {
+		final List<Function<ByteLine, ByteLine>> stages = Lists
+				.newLinkedList();
+
+		for (final List<Mogrifier> group : groups) {
+			final List<Object> objects = getObjects(group);
+
+			// add predicates, testing the encoded ones first
+			if (group.get(0).getType().equals(Mogrifier.Type.PREDICATE)) {
+				final List<Utf8Predicate> utf8Predicates = Lists
+						.newLinkedList();
+				final List<Object> others = Lists.newLinkedList();
+				for (final Object object : compilePredicates(objects)) {
+					if (object instanceof Utf8Predicate) {
+						utf8Predicates.add((Utf8Predicate) object);
+					} else {
+						others.add(object);
+					}
 				}
 
-				// functions
-				else if (lastType.equals(Mogrifier.Type.FUNCTION)) {
-					reader = buildFunctionReader(objects, reader);
+				if (adaptivePredicateOrder && utf8Predicates.size() > 1) {
+					stages.add(new Utf8OmittingPredicateFunction(Collections
+							.<Utf8Predicate> singletonList(new AdaptiveOrPredicate(
+									utf8Predicates))));
+				} else if (!utf8Predicates.isEmpty()) {
+					stages.add(new Utf8OmittingPredicateFunction(
+							utf8Predicates));
 				}
+				if (!others.isEmpty()) {
+					stages.add(new DecodingFunction(
+							buildPredicateFunction(others)));
+				}
+			}
 
-				// in any case we have to empty the list,
-				// change the type
-				lastType = pop.getType();
-				objects.clear();
+			// functions, keeping their order
+			else {
+				final List<Object> others = Lists.newLinkedList();
+				for (final Object object : objects) {
+					if (object instanceof Utf8Function) {
+						if (!others.isEmpty()) {
+							stages.add(new DecodingFunction(
+									buildFunction(others)));
+							others.clear();
+						}
+						stages.add(new ByteLineFunction((Utf8Function) object));
+					} else {
+						others.add(object);
+					}
+				}
+
+				if (!others.isEmpty()) {
+					stages.add(new DecodingFunction(buildFunction(others)));
+				}
 			}
+		}
 
-			// we always have to add the current one to the list of objects
-			objects.add(pop.getObject());
+		return chain(stages);
+	}
 
+	/**
+	 * Gets the objects of the mogrifiers.
+	 *
+	 * @param mogrifiers
+	 *            the mogrifiers
+	 * @return the objects
+	 */
+	private static List<Object> getObjects(final List<Mogrifier> mogrifiers) {
+		final List<Object> objects = Lists.newLinkedList();
+		for (final Mogrifier mogrifier : mogrifiers) {
+			objects.add(mogrifier.getObject());
 		}
+		return objects;
+	}
 
-		// lists of mogrifiers might not be empty
-		if (!objects.isEmpty()) {
-			// add predicates
-			if (lastType.equals(Mogrifier.Type.PREDICATE)) {
-				reader = buildPredicateReader(objects, reader);
-			}
+	/**
+	 * Wraps the predicates and functions of the mogrifiers so that they record
+	 * into the stats, each one into the stage of its position. Wrapped
+	 * predicates and functions are not merged by
+	 * {@link #compilePredicates(List)} and {@link #compileFunctions(List)}.
+	 *
+	 * @param mogrifiers
+	 *            the mogrifiers, in the order they are applied
+	 * @param stats
+	 *            the stats
+	 * @return the instrumented mogrifiers
+	 */
+	private static List<Mogrifier> instrument(
+			final List<Mogrifier> mogrifiers, final PipelineStats stats) {
+		final List<Mogrifier> instrumented = Lists
+				.newArrayListWithCapacity(mogrifiers.size());
+		for (final Mogrifier mogrifier : mogrifiers) {
+			instrumented.add(new Mogrifier(Instrumentation.instrument(
+					mogrifier.getObject(), instrumented.size(), stats),
+					mogrifier.getType()));
+		}
+		return instrumented;
+	}
 
-			// functions
-			else if (lastType.equals(Mogrifier.Type.FUNCTION)) {
-				reader = buildFunctionReader(objects, reader);
-			}
+	/**
+	 * Chains the stages.
+	 *
+	 * @param <T>
+	 *            the generic type
+	 * @param stages
+	 *            the stages
+	 * @return the function
+	 */
+	private static <T> Function<T, T> chain(final List<Function<T, T>> stages) {
+		// a single stage
+		if (stages.size() == 1) {
+			return stages.get(0);
 		}
 
-		return reader;
+		return new ChainFunction<T>(stages);
 	}
 
 	/**
-	 * Builds the function reader.
+	 * Builds the function, applying the given functions one after another.
 	 *
-	 * @param objects
-	 *            the objects
-	 * @param reader
-	 *            the reader
-	 * @return the reader
+	 * @param functionObjects
+	 *            the functions
+	 * @return the function
 	 */
-	private Reader buildFunctionReader(final List<Object> objects, Reader reader) {
+	private Function<CharSequence, CharSequence> buildFunction(
+			final List<Object> functionObjects) {
+		final List<Object> objects = compileFunctions(functionObjects);
+
 		// multiple functions
 		if (objects.size() > 1) {
 			final List<Function<String, String>> functions = Lists
@@ -238,50 +486,234 @@ public class MogrifiedReaderMaker {
 				functions.add(function);
 			}
 
-			reader = new FunctionFilterReader(reader,
-					new ChainFunction<String>(functions));
+			return new CharSequenceFunction(new ChainFunction<String>(
+					functions));
+		}
+
+		// single function
+		@SuppressWarnings("unchecked")
+		final Function<String, String> function = (Function<String, String>) objects
+				.get(0);
+		return new CharSequenceFunction(function);
+	}
+
+	/**
+	 * Compiles a group of functions into cheaper, equivalent functions. Runs
+	 * of at least {@value #MIN_PATTERNS_FOR_AUTOMATON} adjacent
+	 * {@link ReplaceFunction}s are merged into a single
+	 * {@link MultiReplaceFunction}, which scans a line once. Replacements are
+	 * only merged if no old string can overlap another one, no new string can
+	 * overlap a later old string and no replacement but the last deletes its
+	 * old string, because only then replacing one after another gives the
+	 * same result as replacing all at once.
+	 *
+	 * @param objects
+	 *            the functions
+	 * @return the compiled functions
+	 */
+	private static List<Object> compileFunctions(final List<Object> objects) {
+		final List<Object> compiled = Lists.newLinkedList();
+		final List<ReplaceFunction> run = Lists.newLinkedList();
+		for (final Object object : objects) {
+			if (object instanceof ReplaceFunction
+					&& canMerge(run, (ReplaceFunction) object)) {
+				run.add((ReplaceFunction) object);
+				continue;
+			}
+
+			addReplacements(compiled, run);
+			run.clear();
+			if (object instanceof ReplaceFunction
+					&& canMerge(run, (ReplaceFunction) object)) {
+				run.add((ReplaceFunction) object);
+			} else {
+				compiled.add(object);
+			}
+		}
+		addReplacements(compiled, run);
+
+		return compiled;
+	}
+
+	/**
+	 * Checks if the replacement can be appended to a run of replacements that
+	 * are merged into a single {@link MultiReplaceFunction}.
+	 *
+	 * @param run
+	 *            the run
+	 * @param replacement
+	 *            the replacement
+	 * @return true, if successful
+	 */
+	private static boolean canMerge(final List<ReplaceFunction> run,
+			final ReplaceFunction replacement) {
+		final String oldString = replacement.getOldString();
+		if (oldString.isEmpty()) {
+			return false;
+		}
+		for (final ReplaceFunction earlier : run) {
+			// a deletion can join the text around it into a later match
+			if (earlier.getNewString().isEmpty()
+					|| overlaps(earlier.getOldString(), oldString)
+					|| overlaps(earlier.getNewString(), oldString)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if two strings can overlap in any text, i.e. if one contains the
+	 * other or a suffix of one is a prefix of the other.
+	 *
+	 * @param a
+	 *            the a
+	 * @param b
+	 *            the b
+	 * @return true, if successful
+	 */
+	private static boolean overlaps(final String a, final String b) {
+		if (a.isEmpty() || b.isEmpty()) {
+			return false;
+		}
+		if (a.contains(b) || b.contains(a)) {
+			return true;
+		}
+		final int max = Math.min(a.length(), b.length());
+		for (int length = 1; length < max; length++) {
+			if (a.regionMatches(a.length() - length, b, 0, length)
+					|| b.regionMatches(b.length() - length, a, 0, length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a run of replacements to the compiled functions, merged if it is
+	 * long enough.
+	 *
+	 * @param compiled
+	 *            the compiled functions
+	 * @param run
+	 *            the run
+	 */
+	private static void addReplacements(final List<Object> compiled,
+			final List<ReplaceFunction> run) {
+		if (run.size() >= MIN_PATTERNS_FOR_AUTOMATON) {
+			final Map<String, String> replacements = Maps.newLinkedHashMap();
+			for (final ReplaceFunction replacement : run) {
+				replacements.put(replacement.getOldString(),
+						replacement.getNewString());
+			}
+			compiled.add(new MultiReplaceFunction(replacements));
+		} else {
+			compiled.addAll(run);
+		}
+	}
+
+	/**
+	 * Compiles a group of predicates into cheaper, equivalent predicates. At
+	 * least {@value #MIN_PATTERNS_FOR_AUTOMATON} {@link ContainingPredicate}s
+	 * are merged into a single {@link ContainingAnyPredicate}, which scans a
+	 * line once for all needles, and as many {@link StartingWithPredicate}s
+	 * into a single {@link StartingWithAnyPredicate}, which walks a prefix
+	 * trie once. Likewise, {@link MatchingPredicate}s are merged into a
+	 * single {@link MatchingAnyPredicate}. Fewer patterns are faster on their
+	 * own.
+	 *
+	 * @param objects
+	 *            the predicates
+	 * @return the compiled predicates
+	 */
+	private static List<Object> compilePredicates(final List<Object> objects) {
+		final List<Object> compiled = Lists.newLinkedList();
+		final List<ContainingPredicate> containing = Lists.newLinkedList();
+		final List<StartingWithPredicate> startingWith = Lists
+				.newLinkedList();
+		final List<MatchingPredicate> matching = Lists.newLinkedList();
+		for (final Object object : objects) {
+			if (object instanceof ContainingPredicate) {
+				containing.add((ContainingPredicate) object);
+			} else if (object instanceof StartingWithPredicate) {
+				startingWith.add((StartingWithPredicate) object);
+			} else if (object instanceof MatchingPredicate) {
+				matching.add((MatchingPredicate) object);
+			} else {
+				compiled.add(object);
+			}
+		}
+
+		if (startingWith.size() >= MIN_PATTERNS_FOR_AUTOMATON) {
+			final List<String> prefixes = Lists
+					.newArrayListWithCapacity(startingWith.size());
+			for (final StartingWithPredicate predicate : startingWith) {
+				prefixes.add(predicate.getPrefix());
+			}
+			compiled.add(0, new StartingWithAnyPredicate(prefixes));
+		} else {
+			compiled.addAll(0, startingWith);
+		}
+
+		if (containing.size() >= MIN_PATTERNS_FOR_AUTOMATON) {
+			final List<String> needles = Lists.newArrayListWithCapacity(containing
+					.size());
+			for (final ContainingPredicate predicate : containing) {
+				needles.add(predicate.getNeedle());
+			}
+			compiled.add(new ContainingAnyPredicate(needles));
+		} else {
+			compiled.addAll(containing);
+		}
 
-			// single function
+		if (matching.size() >= MIN_PATTERNS_FOR_AUTOMATON) {
+			final List<String> regexes = Lists.newArrayListWithCapacity(matching
+					.size());
+			for (final MatchingPredicate predicate : matching) {
+				regexes.add(predicate.getRegex());
+			}
+			compiled.add(new MatchingAnyPredicate(regexes));
 		} else {
-			@SuppressWarnings("unchecked")
-			final Function<String, String> function = (Function<String, String>) objects
-					.get(0);
-			reader = new FunctionFilterReader(reader, function);
+			compiled.addAll(matching);
 		}
-		return reader;
+
+		return compiled;
 	}
 
 	/**
-	 * Builds the predicate reader.
+	 * Builds the predicate function, a function that omits a line if any of
+	 * the given predicates applies.
 	 *
 	 * @param objects
 	 *            the objects
-	 * @param reader
-	 *            the reader
-	 * @return the reader
+	 * @return the function
 	 */
-	private Reader buildPredicateReader(final List<Object> objects,
-			Reader reader) {
+	private Function<CharSequence, CharSequence> buildPredicateFunction(
+			final List<Object> objects) {
+		// multiple predicates, in an adaptive order
+		if (adaptivePredicateOrder && objects.size() > 1) {
+			return new OmittingPredicateFunction(new AdaptiveOrPredicate(
+					objects));
+		}
+
 		// multiple predicates
 		if (objects.size() > 1) {
-			final List<Predicate<String>> predicates = Lists.newLinkedList();
+			final List<Predicate<CharSequence>> predicates = Lists
+					.newLinkedList();
 			for (final Object object : objects) {
 				@SuppressWarnings("unchecked")
-				final Predicate<String> predicate = (Predicate<String>) object;
+				final Predicate<CharSequence> predicate = (Predicate<CharSequence>) object;
 				predicates.add(predicate);
 			}
-			reader = new PredicateFilterReader(reader,
-					Predicates.<String> not(Predicates.<String> or(predicates)));
-
-			// a single predicate
-		} else {
-			@SuppressWarnings("unchecked")
-			final Predicate<String> predicate = (Predicate<String>) objects
-					.get(0);
-			reader = new PredicateFilterReader(reader,
-					Predicates.not(predicate));
+			return new OmittingPredicateFunction(
+					Predicates.<CharSequence> or(predicates));
 		}
-		return reader;
+
+		// a single predicate
+		@SuppressWarnings("unchecked")
+		final Predicate<CharSequence> predicate = (Predicate<CharSequence>) objects
+				.get(0);
+		return new OmittingPredicateFunction(predicate);
 	}
 
 	/**
@@ -292,9 +724,367 @@ public class MogrifiedReaderMaker {
 	 * @return the reader
 	 * @throws FileNotFoundException
 	 *             the file not found exception
+	 * @see Pipeline#read(File)
 	 */
 	public Reader read(final File file) throws FileNotFoundException {
-		return wrap(new FileReader(file));
+		return compile().read(file);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file, decoding it with the given
+	 * charset.
+	 *
+	 * @param file
+	 *            the file
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws FileNotFoundException
+	 *             the file not found exception
+	 * @see Pipeline#read(File, Charset)
+	 */
+	public Reader read(final File file, final Charset charset)
+			throws FileNotFoundException {
+		return compile().read(file, charset);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file through a memory mapping.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#read(Path)
+	 */
+	public Reader read(final Path path) throws IOException {
+		return compile().read(path);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file through a memory mapping,
+	 * decoding it with the given charset.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#read(Path, Charset)
+	 */
+	public Reader read(final Path path, final Charset charset)
+			throws IOException {
+		return compile().read(path, charset);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the mogrified lines of the file
+	 * through the cache.
+	 *
+	 * @param path
+	 *            the path
+	 * @param cache
+	 *            the cache
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#read(Path, ResultCache)
+	 */
+	public Reader read(final Path path, final ResultCache cache)
+			throws IOException {
+		return compile().read(path, cache);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file ahead on an asynchronous
+	 * channel, decoding it with the given charset.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#readAhead(Path, Charset)
+	 */
+	public Reader readAhead(final Path path, final Charset charset)
+			throws IOException {
+		return compile().readAhead(path, charset);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file ahead on an asynchronous
+	 * channel with the given number of reads in flight, decoding it with the
+	 * given charset.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param buffers
+	 *            the number of reads in flight
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#readAhead(Path, Charset, int)
+	 */
+	public Reader readAhead(final Path path, final Charset charset,
+			final int buffers) throws IOException {
+		return compile().readAhead(path, charset, buffers);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file in parallel, in file order.
+	 *
+	 * @param path
+	 *            the path
+	 * @param pool
+	 *            the pool
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#readParallel(Path, ForkJoinPool)
+	 */
+	public Reader readParallel(final Path path, final ForkJoinPool pool)
+			throws IOException {
+		return compile().readParallel(path, pool);
+	}
+
+	/**
+	 * Compiles the mogrifiers and reads the file in parallel.
+	 *
+	 * @param path
+	 *            the path
+	 * @param pool
+	 *            the pool
+	 * @param ordered
+	 *            if <code>true</code>, the lines are returned in file order
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#readParallel(Path, ForkJoinPool, boolean)
+	 */
+	public Reader readParallel(final Path path, final ForkJoinPool pool,
+			final boolean ordered) throws IOException {
+		return compile().readParallel(path, pool, ordered);
+	}
+
+	/**
+	 * Compiles the mogrifiers and creates a follower that pushes the mogrified
+	 * lines appended to the file to the listener.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param listener
+	 *            the listener
+	 * @return the file follower
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#follow(Path, Charset, LineListener)
+	 */
+	public FileFollower follow(final Path path, final Charset charset,
+			final LineListener listener) throws IOException {
+		return compile().follow(path, charset, listener);
+	}
+
+	/**
+	 * Compiles the mogrifiers and returns the mogrified lines of the reader as
+	 * a stream.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @return the stream
+	 * @see Pipeline#lines(Reader)
+	 */
+	public Stream<String> lines(final Reader reader) {
+		return compile().lines(reader);
+	}
+
+	/**
+	 * Compiles the mogrifiers and returns the mogrified lines of the file as a
+	 * stream that can be split for parallel processing.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#lines(Path)
+	 */
+	public Stream<String> lines(final Path path) throws IOException {
+		return compile().lines(path);
+	}
+
+	/**
+	 * Compiles the mogrifiers and returns the mogrified lines of the file,
+	 * decoded with the given charset, as a stream that can be split for
+	 * parallel processing.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#lines(Path, Charset)
+	 */
+	public Stream<String> lines(final Path path, final Charset charset)
+			throws IOException {
+		return compile().lines(path, charset);
+	}
+
+	/**
+	 * Compiles the mogrifiers and writes the mogrified lines of the reader to
+	 * the writer.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @param writer
+	 *            the writer
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#writeTo(Reader, Writer)
+	 */
+	public long writeTo(final Reader reader, final Writer writer)
+			throws IOException {
+		return compile().writeTo(reader, writer);
+	}
+
+	/**
+	 * Compiles the mogrifiers and writes the mogrified lines of the UTF-8
+	 * encoded input stream to the output stream.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param out
+	 *            the output stream
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#writeTo(InputStream, OutputStream)
+	 */
+	public long writeTo(final InputStream in, final OutputStream out)
+			throws IOException {
+		return compile().writeTo(in, out);
+	}
+
+	/**
+	 * Compiles the mogrifiers and writes the mogrified lines of the source
+	 * file to the target file.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#writeTo(Path, Path)
+	 */
+	public long writeTo(final Path source, final Path target)
+			throws IOException {
+		return compile().writeTo(source, target);
+	}
+
+	/**
+	 * Compiles the mogrifiers and writes the mogrified lines of the source
+	 * file to the target file, saving checkpoints to resume from.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @param checkpoint
+	 *            the checkpoint file
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#writeTo(Path, Path, Path)
+	 */
+	public long writeTo(final Path source, final Path target,
+			final Path checkpoint) throws IOException {
+		return compile().writeTo(source, target, checkpoint);
+	}
+
+	/**
+	 * Compiles the mogrifiers and writes the mogrified lines of the source
+	 * file to the target file, saving checkpoints at the given interval to
+	 * resume from.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @param checkpoint
+	 *            the checkpoint file
+	 * @param interval
+	 *            the number of input bytes between checkpoints
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#writeTo(Path, Path, Path, long)
+	 */
+	public long writeTo(final Path source, final Path target,
+			final Path checkpoint, final long interval) throws IOException {
+		return compile().writeTo(source, target, checkpoint, interval);
+	}
+
+	/**
+	 * Compiles the mogrifiers and processes the matching files of the
+	 * directory on a pool of the given number of threads.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param glob
+	 *            the glob, e.g. <code>*.log</code>
+	 * @param target
+	 *            the target directory
+	 * @param threads
+	 *            the number of threads
+	 * @return the batch result
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#processDirectory(Path, String, Path, int)
+	 */
+	public BatchResult processDirectory(final Path directory,
+			final String glob, final Path target, final int threads)
+			throws IOException {
+		return compile().processDirectory(directory, glob, target, threads);
+	}
+
+	/**
+	 * Compiles the mogrifiers and processes the matching files of the
+	 * directory on the given executor.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param glob
+	 *            the glob, e.g. <code>*.log</code>
+	 * @param target
+	 *            the target directory
+	 * @param executor
+	 *            the executor
+	 * @param maxOpenFiles
+	 *            the maximum number of files processed at once
+	 * @return the batch result
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see Pipeline#processDirectory(Path, String, Path, ExecutorService, int)
+	 */
+	public BatchResult processDirectory(final Path directory,
+			final String glob, final Path target,
+			final ExecutorService executor, final int maxOpenFiles)
+			throws IOException {
+		return compile().processDirectory(directory, glob, target, executor,
+				maxOpenFiles);
 	}
 
 	/**
@@ -425,6 +1215,19 @@ public class MogrifiedReaderMaker {
 
 			return mogrifiedReaderMaker;
 		}
+
+		/**
+		 * By removing the longest of the given prefixes a line starts with.
+		 *
+		 * @param prefixes
+		 *            the prefixes
+		 * @return the mogrified reader maker
+		 */
+		public MogrifiedReaderMaker byRemovingPrefixes(final String... prefixes) {
+			mogrifiedReaderMaker.add(new RemovePrefixFunction(prefixes));
+
+			return mogrifiedReaderMaker;
+		}
 	}
 
 }
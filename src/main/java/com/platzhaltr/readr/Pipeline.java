@@ -0,0 +1,971 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.platzhaltr.readr.functions.DecodingFunction;
+import com.platzhaltr.readr.functions.Utf8Function;
+import com.platzhaltr.readr.io.BufferedLineReader;
+import com.platzhaltr.readr.io.ByteLine;
+import com.platzhaltr.readr.io.ByteLineReader;
+import com.platzhaltr.readr.io.Checkpoint;
+import com.platzhaltr.readr.io.CheckpointListener;
+import com.platzhaltr.readr.io.CompressionFormat;
+import com.platzhaltr.readr.io.DecodingReader;
+import com.platzhaltr.readr.io.FileFollower;
+import com.platzhaltr.readr.io.FileLineSpliterator;
+import com.platzhaltr.readr.io.Line;
+import com.platzhaltr.readr.io.LineListener;
+import com.platzhaltr.readr.io.LineReader;
+import com.platzhaltr.readr.io.MappedLineReader;
+import com.platzhaltr.readr.io.ParallelPipelineReader;
+import com.platzhaltr.readr.io.PipelineFilterInputStream;
+import com.platzhaltr.readr.io.PipelineFilterReader;
+import com.platzhaltr.readr.io.PipelineSink;
+import com.platzhaltr.readr.io.ReadAheadInputStream;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
+
+/**
+ * The compiled mogrifiers of a {@link MogrifiedReaderMaker}, see
+ * {@link MogrifiedReaderMaker#compile()}. A pipeline is immutable and safe to
+ * use from several threads, so it can wrap any number of readers, also
+ * concurrently, without compiling the mogrifiers again.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public final class Pipeline {
+
+	/** The Constant DEFAULT_CHECKPOINT_INTERVAL. */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 64 * 1024 * 1024;
+
+	/** The pipeline, <code>null</code> if there are no mogrifiers. */
+	private final Function<CharSequence, CharSequence> pipeline;
+
+	/** The pipeline for UTF-8 encoded lines. */
+	private final Function<ByteLine, ByteLine> utf8Pipeline;
+
+	/** The rewrites applied by the optimizer. */
+	private final List<String> rewrites;
+
+	/** The fingerprint of the mogrifiers. */
+	private final String fingerprint;
+
+	/**
+	 * Instantiates a new pipeline.
+	 *
+	 * @param pipeline
+	 *            the pipeline, <code>null</code> if there are no mogrifiers
+	 * @param utf8Pipeline
+	 *            the pipeline for UTF-8 encoded lines
+	 * @param rewrites
+	 *            the rewrites applied by the optimizer
+	 * @param fingerprint
+	 *            the fingerprint of the mogrifiers
+	 */
+	Pipeline(final Function<CharSequence, CharSequence> pipeline,
+			final Function<ByteLine, ByteLine> utf8Pipeline,
+			final List<String> rewrites, final String fingerprint) {
+		this.pipeline = pipeline;
+		this.utf8Pipeline = utf8Pipeline;
+		this.rewrites = ImmutableList.copyOf(rewrites);
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Gets the rewrites the optimizer applied to the mogrifiers, see
+	 * {@link MogrifiedReaderMaker#optimize()}.
+	 *
+	 * @return the descriptions of the rewrites, empty if the mogrifiers were
+	 *         not optimized
+	 */
+	public List<String> getRewrites() {
+		return rewrites;
+	}
+
+	/**
+	 * Gets the fingerprint of the mogrifiers: a hash over their order, types
+	 * and parameters, as added to the maker. Pipelines with the same
+	 * fingerprint return the same lines, whether optimized or not.
+	 *
+	 * @return the fingerprint as a hex string
+	 * @see ResultCache
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Wraps the given reader into a single {@link PipelineFilterReader} that
+	 * applies all mogrifiers in one pass per line.
+	 *
+	 * <p>
+	 * The most recently added mogrifier runs first, the first one added runs
+	 * last. Consecutive predicates are combined into one stage that rejects a
+	 * line as soon as one of them applies, so later stages never see omitted
+	 * lines.
+	 * Predicates are tested on a view of the line buffer; a {@link String} is
+	 * only created once a function needs one.
+	 * </p>
+	 *
+	 * @param reader
+	 *            the reader
+	 * @return the reader
+	 */
+	public Reader wrap(final Reader reader) {
+		if (pipeline != null) {
+			return new PipelineFilterReader(reader, pipeline);
+		}
+
+		return reader;
+	}
+
+	/**
+	 * Wraps the given UTF-8 encoded input stream into a single
+	 * {@link PipelineFilterInputStream} that applies all mogrifiers in one pass
+	 * per line, in the same order as {@link #wrap(Reader)}.
+	 *
+	 * <p>
+	 * Predicates and functions that implement {@link Utf8Predicate} or
+	 * {@link Utf8Function} work on the encoded bytes. Only the remaining ones
+	 * decode the line, and a line is only encoded again if such a function
+	 * changed it.
+	 * </p>
+	 *
+	 * @param in
+	 *            the input stream
+	 * @return the input stream
+	 */
+	public InputStream wrapStream(final InputStream in) {
+		if (pipeline != null) {
+			return new PipelineFilterInputStream(in, utf8Pipeline);
+		}
+
+		return in;
+	}
+
+	/**
+	 * Reads the file, decoding it with the platform default charset.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the reader
+	 * @throws FileNotFoundException
+	 *             the file not found exception
+	 * @see #read(File, Charset)
+	 */
+	public Reader read(final File file) throws FileNotFoundException {
+		return read(file, Charset.defaultCharset());
+	}
+
+	/**
+	 * Reads the file, decoding it with the given charset. If the charset
+	 * allows, runs of ASCII bytes are widened to chars directly, see
+	 * {@link DecodingReader}.
+	 *
+	 * @param file
+	 *            the file
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws FileNotFoundException
+	 *             the file not found exception
+	 */
+	public Reader read(final File file, final Charset charset)
+			throws FileNotFoundException {
+		return wrap(newReader(new FileInputStream(file), charset));
+	}
+
+	/**
+	 * Decodes the input stream, through a {@link DecodingReader} if the
+	 * charset allows.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 */
+	private static Reader newReader(final InputStream in, final Charset charset) {
+		if (DecodingReader.hasAsciiFastPath(charset)) {
+			return new DecodingReader(in, charset);
+		}
+		return new InputStreamReader(in, charset);
+	}
+
+	/**
+	 * Reads the file through a {@link MappedLineReader}, decoding it with the
+	 * platform default charset like {@link #read(File)}.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see #read(Path, Charset)
+	 */
+	public Reader read(final Path path) throws IOException {
+		return read(path, Charset.defaultCharset());
+	}
+
+	/**
+	 * Reads the file through a {@link MappedLineReader}, decoding it with the
+	 * given charset. Falls back to a stream if the charset does not allow
+	 * splitting lines on the raw bytes. A file compressed in a format of
+	 * {@link CompressionFormat} is decompressed on background threads.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Reader read(final Path path, final Charset charset)
+			throws IOException {
+		final CompressionFormat format = CompressionFormat.detect(path);
+		if (format != null) {
+			return wrap(newReader(format.open(path), charset));
+		}
+		if (MappedLineReader.isAsciiCompatible(charset)) {
+			return wrap(new MappedLineReader(path, charset));
+		}
+		return wrap(new InputStreamReader(Files.newInputStream(path), charset));
+	}
+
+	/**
+	 * Reads the mogrified lines of the file through the cache, mogrifying the
+	 * file only if the cache holds no output of the same mogrifiers for it.
+	 *
+	 * @param path
+	 *            the path
+	 * @param cache
+	 *            the cache
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see ResultCache#read(Pipeline, Path)
+	 */
+	public Reader read(final Path path, final ResultCache cache)
+			throws IOException {
+		return cache.read(this, path);
+	}
+
+	/**
+	 * Reads the file like {@link #read(Path, Charset)}, but through a
+	 * {@link ReadAheadInputStream} with
+	 * {@value ReadAheadInputStream#DEFAULT_BUFFERS} reads in flight.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see #readAhead(Path, Charset, int)
+	 */
+	public Reader readAhead(final Path path, final Charset charset)
+			throws IOException {
+		return readAhead(path, charset, ReadAheadInputStream.DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Reads the file like {@link #read(Path, Charset)}, but through a
+	 * {@link ReadAheadInputStream} that keeps the given number of reads in
+	 * flight while the mogrifiers work on the lines already read. Pays off on
+	 * volumes with a high latency per read, where a memory mapping waits for
+	 * every page fault in turn. A compressed file is read like
+	 * {@link #read(Path, Charset)}, which already decompresses it on
+	 * background threads.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param buffers
+	 *            the number of reads in flight
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Reader readAhead(final Path path, final Charset charset,
+			final int buffers) throws IOException {
+		if (CompressionFormat.detect(path) != null) {
+			return read(path, charset);
+		}
+		return wrap(newReader(new ReadAheadInputStream(path, buffers,
+				ReadAheadInputStream.DEFAULT_BUFFER_SIZE), charset));
+	}
+
+	/**
+	 * Reads the file like {@link #read(Path)}, but applies the mogrifiers to
+	 * chunks of the file in parallel on the given pool. The lines are returned
+	 * in file order.
+	 *
+	 * @param path
+	 *            the path
+	 * @param pool
+	 *            the pool
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see ParallelPipelineReader
+	 */
+	public Reader readParallel(final Path path, final ForkJoinPool pool)
+			throws IOException {
+		return readParallel(path, pool, true);
+	}
+
+	/**
+	 * Reads the file like {@link #read(Path)}, but applies the mogrifiers to
+	 * chunks of the file in parallel on the given pool. If unordered, the
+	 * chunks are returned as soon as they are done, which keeps all threads of
+	 * the pool busy; the lines within a chunk keep their order. Falls back to
+	 * {@link #read(Path)} if the platform default charset does not allow
+	 * splitting the file on the raw bytes or if the file is compressed.
+	 *
+	 * @param path
+	 *            the path
+	 * @param pool
+	 *            the pool
+	 * @param ordered
+	 *            if <code>true</code>, the lines are returned in file order
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see ParallelPipelineReader
+	 */
+	public Reader readParallel(final Path path, final ForkJoinPool pool,
+			final boolean ordered) throws IOException {
+		final Charset charset = Charset.defaultCharset();
+		if (pipeline == null || !MappedLineReader.isAsciiCompatible(charset)
+				|| CompressionFormat.detect(path) != null) {
+			return read(path);
+		}
+		return new ParallelPipelineReader(path, charset, pipeline, pool,
+				ordered);
+	}
+
+	/**
+	 * Creates a follower that pushes the mogrified lines appended to the file
+	 * from now on to the listener, see {@link FileFollower}. The follower does
+	 * nothing until it is run, e.g. on an executor, and runs until it is
+	 * closed.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param listener
+	 *            the listener
+	 * @return the file follower
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public FileFollower follow(final Path path, final Charset charset,
+			final LineListener listener) throws IOException {
+		return new FileFollower(path, charset, getPipeline(), listener,
+				Files.size(path));
+	}
+
+	/**
+	 * Returns the mogrified lines of the reader as a stream, without line
+	 * terminators. Closing the stream closes the reader. An
+	 * {@link IOException} while reading is thrown as an
+	 * {@link UncheckedIOException}.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @return the stream
+	 */
+	public Stream<String> lines(final Reader reader) {
+		final LineReader lineReader = toLineReader(reader);
+		final Function<CharSequence, CharSequence> function = getPipeline();
+		final Iterator<String> iterator = new AbstractIterator<String>() {
+
+			@Override
+			protected String computeNext() {
+				try {
+					Line line;
+					while ((line = lineReader.readLine()) != null) {
+						final CharSequence result = function.apply(line);
+						if (result != null) {
+							return result.toString();
+						}
+					}
+					return endOfData();
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+		};
+
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(iterator,
+						Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							reader.close();
+						} catch (final IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+
+				});
+	}
+
+	/**
+	 * Returns the mogrified lines of the file as a stream, decoding it with
+	 * the platform default charset like {@link #read(Path)}.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see #lines(Path, Charset)
+	 */
+	public Stream<String> lines(final Path path) throws IOException {
+		return lines(path, Charset.defaultCharset());
+	}
+
+	/**
+	 * Returns the mogrified lines of the file as a stream, decoding it with
+	 * the given charset. The stream is backed by a {@link FileLineSpliterator},
+	 * so a parallel stream processes parts of the file at once. Falls back to
+	 * a sequential stream of the decoded file if the charset does not allow
+	 * splitting the file on the raw bytes or if the file is compressed.
+	 * Closing the stream closes the file.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @return the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Stream<String> lines(final Path path, final Charset charset)
+			throws IOException {
+		final CompressionFormat format = CompressionFormat.detect(path);
+		if (format != null) {
+			return lines(newReader(format.open(path), charset));
+		}
+		if (!MappedLineReader.isAsciiCompatible(charset)) {
+			return lines(new InputStreamReader(Files.newInputStream(path),
+					charset));
+		}
+
+		final FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ);
+		return StreamSupport.stream(
+				new FileLineSpliterator(channel, charset, getPipeline()),
+				false).onClose(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					channel.close();
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Applies the mogrifiers to every line of the reader and writes the result
+	 * to the writer, in large batches. Every line written is terminated by a
+	 * <code>\n</code>. Neither the reader nor the writer is closed.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @param writer
+	 *            the writer
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see PipelineSink
+	 */
+	public long writeTo(final Reader reader, final Writer writer)
+			throws IOException {
+		return PipelineSink.copy(toLineReader(reader), getPipeline(), writer);
+	}
+
+	/**
+	 * Applies the mogrifiers to every line of the UTF-8 encoded input stream
+	 * and writes the result to the output stream, in large batches and
+	 * without encoding lines again that did not change. Every line written is
+	 * terminated by a <code>\n</code>. Neither stream is closed.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param out
+	 *            the output stream
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see PipelineSink
+	 */
+	public long writeTo(final InputStream in, final OutputStream out)
+			throws IOException {
+		return PipelineSink.copy(new ByteLineReader(in),
+				utf8Pipeline != null ? utf8Pipeline : Functions
+						.<ByteLine> identity(), out);
+	}
+
+	/**
+	 * Applies the mogrifiers to every line of the source file and writes the
+	 * result to the target file, both in the platform default charset. If
+	 * that is UTF-8, lines are copied as bytes, without decoding them unless a
+	 * mogrifier needs to. A compressed source is decompressed like
+	 * {@link #read(Path)}.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws IllegalArgumentException
+	 *             if the target is the source file
+	 */
+	public long writeTo(final Path source, final Path target)
+			throws IOException {
+		if (Files.exists(target) && Files.isSameFile(source, target)) {
+			throw new IllegalArgumentException("Target is the source file");
+		}
+		final Charset charset = Charset.defaultCharset();
+		final CompressionFormat format = CompressionFormat.detect(source);
+		if (charset.equals(StandardCharsets.UTF_8)) {
+			final InputStream in = format != null ? format.open(source)
+					: Files.newInputStream(source);
+			try {
+				final OutputStream out = Files.newOutputStream(target);
+				try {
+					return writeTo(in, out);
+				} finally {
+					out.close();
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		final Reader reader;
+		if (format != null) {
+			reader = newReader(format.open(source), charset);
+		} else if (MappedLineReader.isAsciiCompatible(charset)) {
+			reader = new MappedLineReader(source, charset);
+		} else {
+			reader = new InputStreamReader(Files.newInputStream(source),
+					charset);
+		}
+		try {
+			final Writer writer = Files.newBufferedWriter(target, charset);
+			try {
+				return writeTo(reader, writer);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Applies the mogrifiers to every line of the source file and writes the
+	 * result to the target file like {@link #writeTo(Path, Path)}, saving a
+	 * checkpoint every {@value #DEFAULT_CHECKPOINT_INTERVAL} bytes of input.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @param checkpoint
+	 *            the checkpoint file
+	 * @return the number of lines written, including those written before
+	 *         the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @see #writeTo(Path, Path, Path, long)
+	 */
+	public long writeTo(final Path source, final Path target,
+			final Path checkpoint) throws IOException {
+		return writeTo(source, target, checkpoint, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Applies the mogrifiers to every line of the source file and writes the
+	 * result to the target file like {@link #writeTo(Path, Path)}, saving a
+	 * {@link Checkpoint} to the checkpoint file whenever at least the given
+	 * number of input bytes has been processed. The target is forced to the
+	 * disk before every checkpoint, so a checkpoint survives a crash of the
+	 * machine.
+	 *
+	 * <p>
+	 * If the checkpoint file exists, the job resumes from it: the source is
+	 * read from the input offset of the checkpoint, and the target is
+	 * truncated to its output offset and appended to. Once the job is done,
+	 * the checkpoint file is deleted. A compressed source is decompressed up
+	 * to the input offset again, but not mogrified.
+	 * </p>
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @param checkpoint
+	 *            the checkpoint file
+	 * @param interval
+	 *            the number of input bytes between checkpoints
+	 * @return the number of lines written, including those written before
+	 *         the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long writeTo(final Path source, final Path target,
+			final Path checkpoint, final long interval) throws IOException {
+		return writeTo(source, target, checkpoint, interval, null);
+	}
+
+	/**
+	 * Applies the mogrifiers like {@link #writeTo(Path, Path, Path, long)},
+	 * passing every checkpoint to the observer once it has been saved.
+	 *
+	 * @param source
+	 *            the source file
+	 * @param target
+	 *            the target file
+	 * @param checkpoint
+	 *            the checkpoint file
+	 * @param interval
+	 *            the number of input bytes between checkpoints
+	 * @param observer
+	 *            the observer, <code>null</code> for none
+	 * @return the number of lines written, including those written before
+	 *         the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	long writeTo(final Path source, final Path target, final Path checkpoint,
+			final long interval, final CheckpointListener observer)
+			throws IOException {
+		final Charset charset = Charset.defaultCharset();
+		if (!MappedLineReader.isAsciiCompatible(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " is not ASCII compatible");
+		}
+		final Function<ByteLine, ByteLine> function;
+		if (pipeline == null) {
+			function = Functions.<ByteLine> identity();
+		} else if (charset.equals(StandardCharsets.UTF_8)) {
+			function = utf8Pipeline;
+		} else {
+			function = new DecodingFunction(pipeline, charset);
+		}
+
+		final Checkpoint start = Files.exists(checkpoint) ? Checkpoint
+				.read(checkpoint) : Checkpoint.START;
+		final FileChannel out = FileChannel.open(target,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			if (out.size() < start.getOutputOffset()) {
+				throw new IOException("Target " + target
+						+ " is shorter than the checkpoint");
+			}
+			out.truncate(start.getOutputOffset());
+			out.position(start.getOutputOffset());
+
+			final long[] skipped = new long[1];
+			final InputStream in = openAt(source, start.getInputOffset(),
+					skipped);
+			try {
+				// the offsets of the reader start after a skipped \n
+				final Checkpoint resumed = new Checkpoint(
+						start.getInputOffset() + skipped[0],
+						start.getOutputOffset(), start.getLines());
+				final long lines = PipelineSink.copy(new ByteLineReader(in),
+						function, Channels.newOutputStream(out), resumed,
+						interval, new CheckpointListener() {
+
+							@Override
+							public void checkpoint(final Checkpoint next)
+									throws IOException {
+								out.force(false);
+								next.write(checkpoint);
+								if (observer != null) {
+									observer.checkpoint(next);
+								}
+							}
+
+						});
+				Files.delete(checkpoint);
+				return lines;
+			} finally {
+				in.close();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Opens the file at a line boundary, decompressing it if needed. If the
+	 * line before ended with a <code>\r</code>, a <code>\n</code> at the
+	 * offset is skipped.
+	 *
+	 * @param path
+	 *            the path
+	 * @param offset
+	 *            the offset
+	 * @param skipped
+	 *            receives the number of bytes skipped after the offset in its
+	 *            first element
+	 * @return the input stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static InputStream openAt(final Path path, final long offset,
+			final long[] skipped) throws IOException {
+		skipped[0] = 0;
+		final long before = Math.max(offset - 1, 0);
+		final CompressionFormat format = CompressionFormat.detect(path);
+		final InputStream in;
+		if (format != null) {
+			in = format.open(path);
+			try {
+				ByteStreams.skipFully(in, before);
+			} catch (final EOFException e) {
+				in.close();
+				throw e;
+			}
+		} else {
+			in = Channels.newInputStream(FileChannel.open(path,
+					StandardOpenOption.READ).position(before));
+		}
+		if (offset == 0) {
+			return in;
+		}
+
+		final PushbackInputStream pushback = new PushbackInputStream(in);
+		final int previous = pushback.read();
+		if (previous == -1) {
+			pushback.close();
+			throw new EOFException("Source " + path
+					+ " is shorter than the checkpoint");
+		}
+		if (previous == '\r') {
+			final int next = pushback.read();
+			if (next == '\n') {
+				skipped[0] = 1;
+			} else if (next != -1) {
+				pushback.unread(next);
+			}
+		}
+		return pushback;
+	}
+
+	/**
+	 * Processes all regular files in the directory whose names match the glob,
+	 * on a pool of the given number of threads. Each file is written to a
+	 * file of the same name in the target directory, see
+	 * {@link #writeTo(Path, Path)}.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param glob
+	 *            the glob, e.g. <code>*.log</code>
+	 * @param target
+	 *            the target directory, created if necessary
+	 * @param threads
+	 *            the number of threads
+	 * @return the batch result
+	 * @throws IOException
+	 *             if the directory cannot be listed or the target directory
+	 *             cannot be created
+	 * @see #processDirectory(Path, String, Path, ExecutorService, int)
+	 */
+	public BatchResult processDirectory(final Path directory,
+			final String glob, final Path target, final int threads)
+			throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return processDirectory(directory, glob, target, executor, threads);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Processes all regular files in the directory whose names match the glob
+	 * on the given executor. Each file is written to a file of the same name
+	 * in the target directory, see {@link #writeTo(Path, Path)}.
+	 *
+	 * <p>
+	 * Files are submitted as the directory is listed, but never more than
+	 * <code>maxOpenFiles</code> at once, which bounds both the queue of the
+	 * executor and the number of open files. A file that fails is recorded in
+	 * the result and does not affect the others. Returns once all files are
+	 * done.
+	 * </p>
+	 *
+	 * @param directory
+	 *            the directory
+	 * @param glob
+	 *            the glob, e.g. <code>*.log</code>
+	 * @param target
+	 *            the target directory, created if necessary
+	 * @param executor
+	 *            the executor
+	 * @param maxOpenFiles
+	 *            the maximum number of files processed at once
+	 * @return the batch result
+	 * @throws IOException
+	 *             if the directory cannot be listed or the target directory
+	 *             cannot be created
+	 * @throws IllegalArgumentException
+	 *             if the target directory is the source directory
+	 */
+	public BatchResult processDirectory(final Path directory,
+			final String glob, final Path target,
+			final ExecutorService executor, final int maxOpenFiles)
+			throws IOException {
+		if (maxOpenFiles <= 0) {
+			throw new IllegalArgumentException("Max open files <= 0");
+		}
+		if (Files.exists(target) && Files.isSameFile(directory, target)) {
+			throw new IllegalArgumentException(
+					"Target directory is the source directory");
+		}
+		Files.createDirectories(target);
+
+		final BatchResult result = new BatchResult();
+		final Semaphore permits = new Semaphore(maxOpenFiles);
+		final DirectoryStream<Path> files = Files.newDirectoryStream(
+				directory, glob);
+		try {
+			for (final Path file : files) {
+				if (!Files.isRegularFile(file)) {
+					continue;
+				}
+				permits.acquire();
+				try {
+					executor.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								result.succeeded(file, writeTo(file,
+										target.resolve(file.getFileName()
+												.toString())));
+							} catch (final Exception e) {
+								result.failed(file, e);
+							} finally {
+								permits.release();
+							}
+						}
+
+					});
+				} catch (final RejectedExecutionException e) {
+					result.failed(file, e);
+					permits.release();
+				}
+			}
+
+			// wait for all files
+			permits.acquire(maxOpenFiles);
+			permits.release(maxOpenFiles);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} finally {
+			files.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the pipeline, the identity if there are no mogrifiers.
+	 *
+	 * @return the pipeline
+	 */
+	private Function<CharSequence, CharSequence> getPipeline() {
+		if (pipeline != null) {
+			return pipeline;
+		}
+		return Functions.<CharSequence> identity();
+	}
+
+	/**
+	 * Splits the reader into lines, unless it already does.
+	 *
+	 * @param reader
+	 *            the reader
+	 * @return the line reader
+	 */
+	private static LineReader toLineReader(final Reader reader) {
+		if (reader instanceof LineReader) {
+			return (LineReader) reader;
+		}
+		return new BufferedLineReader(reader);
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Ordering;
+import com.platzhaltr.readr.functions.RemovePrefixFunction;
+import com.platzhaltr.readr.functions.ReplaceFunction;
+import com.platzhaltr.readr.predicates.ContainingPredicate;
+import com.platzhaltr.readr.predicates.EndingWithPredicate;
+import com.platzhaltr.readr.predicates.MatchingPredicate;
+import com.platzhaltr.readr.predicates.StartingWithPredicate;
+
+/**
+ * Computes a fingerprint of a list of mogrifiers in the order they are
+ * applied: a SHA-256 hash over the type, class and parameters of each
+ * mogrifier. Lists that return different lines have different fingerprints.
+ * Parameters are hashed with their lengths, so no two lists of parameters
+ * share an encoding, which their descriptions do not guarantee.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+final class PipelineFingerprint {
+
+	/**
+	 * The version of the fingerprint, to be increased whenever a mogrifier
+	 * changes the lines it returns.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Instantiates a new pipeline fingerprint.
+	 */
+	private PipelineFingerprint() {
+	}
+
+	/**
+	 * Computes the fingerprint of the mogrifiers.
+	 *
+	 * @param mogrifiers
+	 *            the mogrifiers, in the order they are applied
+	 * @return the fingerprint as a hex string
+	 */
+	static String of(final List<Mogrifier> mogrifiers) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(VERSION);
+			out.writeInt(mogrifiers.size());
+			for (final Mogrifier mogrifier : mogrifiers) {
+				final Object object = mogrifier.getObject();
+				writeString(out, mogrifier.getType().name());
+				writeString(out, object.getClass().getName());
+				for (final String parameter : getParameters(object)) {
+					writeString(out, parameter);
+				}
+				out.writeInt(-1);
+			}
+			out.close();
+		} catch (final IOException e) {
+			throw new AssertionError(e);
+		}
+		return toHex(sha256(bytes.toByteArray()));
+	}
+
+	/**
+	 * Gets the parameters of a mogrifier. All others, e.g. trimming or
+	 * omitting empty lines, are described by their string.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the parameters
+	 */
+	private static List<String> getParameters(final Object object) {
+		if (object instanceof StartingWithPredicate) {
+			return list(((StartingWithPredicate) object).getPrefix());
+		} else if (object instanceof EndingWithPredicate) {
+			return list(((EndingWithPredicate) object).getSuffix());
+		} else if (object instanceof ContainingPredicate) {
+			return list(((ContainingPredicate) object).getNeedle());
+		} else if (object instanceof MatchingPredicate) {
+			return list(((MatchingPredicate) object).getRegex());
+		} else if (object instanceof ReplaceFunction) {
+			final ReplaceFunction replace = (ReplaceFunction) object;
+			return list(replace.getOldString(), replace.getNewString());
+		} else if (object instanceof RemovePrefixFunction) {
+			return Ordering.natural().sortedCopy(
+					((RemovePrefixFunction) object).getPrefixes());
+		}
+		return list(object.toString());
+	}
+
+	/**
+	 * Creates a list of the strings.
+	 *
+	 * @param strings
+	 *            the strings
+	 * @return the list
+	 */
+	private static List<String> list(final String... strings) {
+		return Arrays.asList(strings);
+	}
+
+	/**
+	 * Writes the string as UTF-8 bytes, preceded by their number.
+	 *
+	 * @param out
+	 *            the out
+	 * @param string
+	 *            the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeString(final DataOutputStream out,
+			final String string) throws IOException {
+		final byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(encoded.length);
+		out.write(encoded);
+	}
+
+	/**
+	 * Hashes the bytes with SHA-256.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the hash
+	 */
+	static byte[] sha256(final byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (final NoSuchAlgorithmException e) {
+			// every JRE supports SHA-256
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Formats the bytes as lower case hex digits.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the hex string
+	 */
+	static String toHex(final byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(
+					Character.forDigit(b & 0xf, 16));
+		}
+		return builder.toString();
+	}
+
+}
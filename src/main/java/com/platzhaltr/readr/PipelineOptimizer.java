@@ -0,0 +1,379 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.platzhaltr.readr.functions.RemovePrefixFunction;
+import com.platzhaltr.readr.functions.ReplaceFunction;
+import com.platzhaltr.readr.functions.TrimFunction;
+import com.platzhaltr.readr.functions.TrimLeftFunction;
+import com.platzhaltr.readr.functions.TrimRightFunction;
+import com.platzhaltr.readr.predicates.ContainingPredicate;
+import com.platzhaltr.readr.predicates.EmptyPredicate;
+import com.platzhaltr.readr.predicates.EndingWithPredicate;
+import com.platzhaltr.readr.predicates.StartingWithPredicate;
+
+/**
+ * Rewrites a list of mogrifiers, in the order they are applied, into a
+ * cheaper list returning the same lines. Only rewrites that are safe for every
+ * line are applied:
+ *
+ * <ul>
+ * <li>Predicates are moved ahead of functions that cannot change whether they
+ * apply, so omitted lines are not transformed first.</li>
+ * <li>Duplicate predicates in a group are removed, as omitting a line twice
+ * has no effect.</li>
+ * <li>Repeated trim functions of the same kind are collapsed, as trimming is
+ * idempotent.</li>
+ * <li>Replacements of a string by itself are removed, as are replacements of
+ * a string that an earlier replacement already removed from every line.</li>
+ * </ul>
+ *
+ * Groups of the same type that end up adjacent are merged. Rewrites repeat
+ * until none applies anymore. Mogrifiers are equivalent if they are of the
+ * same class and have the same description, which for all built-in
+ * mogrifiers contains all their parameters.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+final class PipelineOptimizer {
+
+	/**
+	 * The chars removed from the end of a line by {@link TrimLeftFunction} and
+	 * {@link TrimRightFunction}.
+	 */
+	private static final CharMatcher TRAILING_WHITESPACE = CharMatcher.WHITESPACE
+			.and(CharMatcher.isNot(' '));
+
+	/**
+	 * Instantiates a new pipeline optimizer.
+	 */
+	private PipelineOptimizer() {
+	}
+
+	/**
+	 * Optimizes the mogrifiers.
+	 *
+	 * @param mogrifiers
+	 *            the mogrifiers, in the order they are applied
+	 * @param rewrites
+	 *            receives a description of every rewrite applied
+	 * @return the optimized mogrifiers
+	 */
+	static List<Mogrifier> optimize(final List<Mogrifier> mogrifiers,
+			final List<String> rewrites) {
+		final List<Mogrifier> list = Lists.newArrayList(mogrifiers);
+		final int groups = countGroups(list);
+
+		boolean changed = true;
+		while (changed) {
+			changed = moveFiltersAhead(list, rewrites);
+			changed |= removeDuplicatePredicates(list, rewrites);
+			changed |= collapseTrims(list, rewrites);
+			changed |= removeDeadReplacements(list, rewrites);
+		}
+
+		final int merged = countGroups(list);
+		if (merged < groups) {
+			rewrites.add("Merged " + groups + " groups into " + merged);
+		}
+		return list;
+	}
+
+	/**
+	 * Moves every predicate ahead of the functions before it that cannot
+	 * change whether it applies.
+	 *
+	 * @param list
+	 *            the mogrifiers
+	 * @param rewrites
+	 *            the rewrites
+	 * @return true, if the list changed
+	 */
+	private static boolean moveFiltersAhead(final List<Mogrifier> list,
+			final List<String> rewrites) {
+		boolean changed = false;
+		for (int i = 1; i < list.size(); i++) {
+			final Mogrifier predicate = list.get(i);
+			final Mogrifier function = list.get(i - 1);
+			if (isPredicate(predicate) && !isPredicate(function)
+					&& commutes(predicate.getObject(), function.getObject())) {
+				list.set(i - 1, predicate);
+				list.set(i, function);
+				rewrites.add("Moved " + predicate.getObject() + " ahead of "
+						+ function.getObject());
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks if the predicate applies to a line after the function exactly if
+	 * it applies to the line before.
+	 *
+	 * @param predicate
+	 *            the predicate
+	 * @param function
+	 *            the function
+	 * @return true, if the order does not matter
+	 */
+	static boolean commutes(final Object predicate, final Object function) {
+		final String pattern;
+		if (predicate instanceof ContainingPredicate) {
+			pattern = ((ContainingPredicate) predicate).getNeedle();
+		} else if (predicate instanceof StartingWithPredicate) {
+			pattern = ((StartingWithPredicate) predicate).getPrefix();
+		} else if (predicate instanceof EndingWithPredicate) {
+			pattern = ((EndingWithPredicate) predicate).getSuffix();
+		} else if (predicate instanceof EmptyPredicate) {
+			// only a replacement by nothing can empty a line
+			return function instanceof ReplaceFunction
+					&& !((ReplaceFunction) function).getOldString().isEmpty()
+					&& !((ReplaceFunction) function).getNewString().isEmpty();
+		} else {
+			return false;
+		}
+
+		if (pattern.isEmpty()) {
+			return true;
+		}
+
+		// an occurrence can neither be created nor destroyed, as it cannot
+		// overlap any replaced or inserted char, and the inserted chars keep
+		// the text around them apart
+		if (function instanceof ReplaceFunction) {
+			final ReplaceFunction replace = (ReplaceFunction) function;
+			return !replace.getOldString().isEmpty()
+					&& !replace.getNewString().isEmpty()
+					&& !sharesChars(pattern, replace.getOldString())
+					&& !sharesChars(pattern, replace.getNewString());
+		}
+
+		// trimming only removes whitespace from the ends, so an occurrence
+		// that does not end in whitespace is never cut, and the trimmed line
+		// contains nothing new
+		final char last = pattern.charAt(pattern.length() - 1);
+		if (function instanceof TrimLeftFunction
+				|| function instanceof TrimRightFunction) {
+			return !(predicate instanceof EndingWithPredicate)
+					&& !TRAILING_WHITESPACE.matches(last);
+		}
+		if (function instanceof TrimFunction) {
+			return predicate instanceof ContainingPredicate
+					&& pattern.charAt(0) > ' ' && last > ' ';
+		}
+		return false;
+	}
+
+	/**
+	 * Removes predicates that occur earlier in the same group.
+	 *
+	 * @param list
+	 *            the mogrifiers
+	 * @param rewrites
+	 *            the rewrites
+	 * @return true, if the list changed
+	 */
+	private static boolean removeDuplicatePredicates(
+			final List<Mogrifier> list, final List<String> rewrites) {
+		boolean changed = false;
+		final Set<String> seen = Sets.newHashSet();
+		for (int i = 0; i < list.size(); i++) {
+			final Mogrifier mogrifier = list.get(i);
+			if (!isPredicate(mogrifier)) {
+				seen.clear();
+				continue;
+			}
+
+			if (!seen.add(key(mogrifier.getObject()))) {
+				list.remove(i--);
+				rewrites.add("Removed duplicate " + mogrifier.getObject());
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Collapses adjacent trim functions that trim the same.
+	 * {@link TrimLeftFunction} and {@link TrimRightFunction} both trim the end
+	 * of a line, {@link TrimFunction} trims different chars and is only
+	 * collapsed with itself.
+	 *
+	 * @param list
+	 *            the mogrifiers
+	 * @param rewrites
+	 *            the rewrites
+	 * @return true, if the list changed
+	 */
+	private static boolean collapseTrims(final List<Mogrifier> list,
+			final List<String> rewrites) {
+		boolean changed = false;
+		for (int i = 1; i < list.size(); i++) {
+			final Object previous = list.get(i - 1).getObject();
+			final Object object = list.get(i).getObject();
+			if (isTrailingTrim(previous) && isTrailingTrim(object)
+					|| previous instanceof TrimFunction
+					&& object instanceof TrimFunction) {
+				list.remove(i--);
+				rewrites.add("Collapsed " + object + " into " + previous);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes replacements of a string by itself and replacements of a string
+	 * that cannot occur anymore. After replacing a string by a non-empty one
+	 * that shares no char with it, the string does not occur in the line, and
+	 * functions returning a substring of the line cannot bring it back.
+	 *
+	 * @param list
+	 *            the mogrifiers
+	 * @param rewrites
+	 *            the rewrites
+	 * @return true, if the list changed
+	 */
+	private static boolean removeDeadReplacements(final List<Mogrifier> list,
+			final List<String> rewrites) {
+		boolean changed = false;
+		for (int i = 0; i < list.size(); i++) {
+			final Object object = list.get(i).getObject();
+			if (!(object instanceof ReplaceFunction)) {
+				continue;
+			}
+
+			final ReplaceFunction replace = (ReplaceFunction) object;
+			final String oldString = replace.getOldString();
+			if (oldString.equals(replace.getNewString())) {
+				list.remove(i--);
+				rewrites.add("Removed " + replace + " as it changes nothing");
+				changed = true;
+				continue;
+			}
+
+			for (int j = i - 1; j >= 0; j--) {
+				final Object earlier = list.get(j).getObject();
+				if (earlier instanceof ReplaceFunction) {
+					final ReplaceFunction other = (ReplaceFunction) earlier;
+					if (!oldString.isEmpty()
+							&& other.getOldString().equals(oldString)
+							&& !other.getNewString().isEmpty()
+							&& !sharesChars(oldString, other.getNewString())) {
+						list.remove(i--);
+						rewrites.add("Removed " + replace
+								+ " as it can never match after " + other);
+						changed = true;
+					}
+					break;
+				}
+				if (!isPredicate(list.get(j)) && !isSubstringFunction(earlier)) {
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks if the mogrifier is a predicate.
+	 *
+	 * @param mogrifier
+	 *            the mogrifier
+	 * @return true, if it is a predicate
+	 */
+	private static boolean isPredicate(final Mogrifier mogrifier) {
+		return mogrifier.getType() == Mogrifier.Type.PREDICATE;
+	}
+
+	/**
+	 * Checks if the function trims the end of a line.
+	 *
+	 * @param object
+	 *            the function
+	 * @return true, if it trims the end
+	 */
+	private static boolean isTrailingTrim(final Object object) {
+		return object instanceof TrimLeftFunction
+				|| object instanceof TrimRightFunction;
+	}
+
+	/**
+	 * Checks if the function always returns a substring of the line.
+	 *
+	 * @param object
+	 *            the function
+	 * @return true, if it does
+	 */
+	private static boolean isSubstringFunction(final Object object) {
+		return object instanceof TrimFunction || isTrailingTrim(object)
+				|| object instanceof RemovePrefixFunction;
+	}
+
+	/**
+	 * Checks if the strings have a char in common.
+	 *
+	 * @param a
+	 *            a string
+	 * @param b
+	 *            another string
+	 * @return true, if they have a char in common
+	 */
+	private static boolean sharesChars(final String a, final String b) {
+		for (int i = 0; i < a.length(); i++) {
+			if (b.indexOf(a.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the key identifying equivalent mogrifiers.
+	 *
+	 * @param object
+	 *            the predicate or function
+	 * @return the key
+	 */
+	private static String key(final Object object) {
+		return object.getClass().getName() + ':' + object;
+	}
+
+	/**
+	 * Counts the groups of consecutive mogrifiers of the same type.
+	 *
+	 * @param list
+	 *            the mogrifiers
+	 * @return the number of groups
+	 */
+	private static int countGroups(final List<Mogrifier> list) {
+		int groups = 0;
+		for (int i = 0; i < list.size(); i++) {
+			if (i == 0 || list.get(i).getType() != list.get(i - 1).getType()) {
+				groups++;
+			}
+		}
+		return groups;
+	}
+
+}
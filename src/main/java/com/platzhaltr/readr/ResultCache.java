@@ -0,0 +1,450 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.platzhaltr.readr.io.DecodingReader;
+
+/**
+ * A cache of mogrified files on disk. An entry is keyed by the fingerprint of
+ * the pipeline, see {@link Pipeline#getFingerprint()}, the charset and the
+ * fingerprint of the source file: its real path, size, modification time and
+ * file key or, if requested, a hash of its contents, which also finds files
+ * copied or moved elsewhere. Reading the same file with the same mogrifiers
+ * again reads the stored output instead of mogrifying the file.
+ *
+ * The size of all entries is capped; the least recently used entries are
+ * evicted first. The time of the last use is kept as the modification time of
+ * an entry, so the order survives a restart. Output that does not fit at all
+ * or whose source changed while it was mogrified is not stored. Only one
+ * cache should use a directory at a time.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ResultCache {
+
+	/** The Constant ENTRY_SUFFIX. */
+	private static final String ENTRY_SUFFIX = ".out";
+
+	/** The Constant TEMPORARY_SUFFIX. */
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/** The Constant HASH_BUFFER_SIZE. */
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	/** The directory. */
+	private final Path directory;
+
+	/** The maximum size of all entries in bytes. */
+	private final long maxSize;
+
+	/** If <code>true</code>, source files are identified by their contents. */
+	private final boolean hashContents;
+
+	/** The sizes of the entries by key, least recently used first. */
+	private final Map<String, Long> entries = new LinkedHashMap<String, Long>(
+			16, 0.75f, true);
+
+	/** The size of all entries in bytes. */
+	private long size;
+
+	/** The number of reads served from the cache. */
+	private long hits;
+
+	/** The number of reads that mogrified the source. */
+	private long misses;
+
+	/**
+	 * Instantiates a new result cache identifying source files by path, size
+	 * and modification time.
+	 *
+	 * @param directory
+	 *            the directory, created if needed
+	 * @param maxSize
+	 *            the maximum size of all entries in bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ResultCache(final Path directory, final long maxSize)
+			throws IOException {
+		this(directory, maxSize, false);
+	}
+
+	/**
+	 * Instantiates a new result cache.
+	 *
+	 * @param directory
+	 *            the directory, created if needed
+	 * @param maxSize
+	 *            the maximum size of all entries in bytes
+	 * @param hashContents
+	 *            if <code>true</code>, source files are identified by a hash
+	 *            of their contents, which reads every file once per lookup
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ResultCache(final Path directory, final long maxSize,
+			final boolean hashContents) throws IOException {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Max size <= 0");
+		}
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.hashContents = hashContents;
+		Files.createDirectories(directory);
+		load();
+	}
+
+	/**
+	 * Loads the entries in the directory, least recently used first, and
+	 * deletes temporary files left over.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void load() throws IOException {
+		final List<Path> files = Lists.newArrayList();
+		final DirectoryStream<Path> stream = Files
+				.newDirectoryStream(directory);
+		try {
+			for (final Path file : stream) {
+				final String name = file.getFileName().toString();
+				if (name.endsWith(ENTRY_SUFFIX)) {
+					files.add(file);
+				} else if (name.endsWith(TEMPORARY_SUFFIX)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		} finally {
+			stream.close();
+		}
+
+		final Map<Path, FileTime> times = new LinkedHashMap<Path, FileTime>();
+		for (final Path file : files) {
+			times.put(file, Files.getLastModifiedTime(file));
+		}
+		Collections.sort(files, new Comparator<Path>() {
+
+			@Override
+			public int compare(final Path o1, final Path o2) {
+				return times.get(o1).compareTo(times.get(o2));
+			}
+
+		});
+
+		for (final Path file : files) {
+			final String name = file.getFileName().toString();
+			final long length = Files.size(file);
+			entries.put(name.substring(0, name.length()
+					- ENTRY_SUFFIX.length()), length);
+			size += length;
+		}
+		evict(maxSize);
+	}
+
+	/**
+	 * Reads the mogrified lines of the source file in the platform default
+	 * charset, like {@link Pipeline#writeTo(Path, Path)} writes them: every
+	 * line terminated by a <code>\n</code>. The output is taken from the cache
+	 * if the pipeline has read the same file before, otherwise it is written
+	 * to the cache first.
+	 *
+	 * @param pipeline
+	 *            the pipeline
+	 * @param source
+	 *            the source file
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Reader read(final Pipeline pipeline, final Path source)
+			throws IOException {
+		final Charset charset = Charset.defaultCharset();
+		final BasicFileAttributes before = Files.readAttributes(source,
+				BasicFileAttributes.class);
+		final String key = getKey(pipeline, source, charset, before);
+		final Path entry = directory.resolve(key + ENTRY_SUFFIX);
+
+		synchronized (this) {
+			if (entries.get(key) != null) {
+				try {
+					Files.setLastModifiedTime(entry,
+							FileTime.fromMillis(System.currentTimeMillis()));
+					final Reader reader = open(entry, charset);
+					hits++;
+					return reader;
+				} catch (final NoSuchFileException e) {
+					size -= entries.remove(key);
+				}
+			}
+			misses++;
+		}
+
+		final Path temporary = Files.createTempFile(directory, key,
+				TEMPORARY_SUFFIX);
+		boolean written = false;
+		try {
+			pipeline.writeTo(source, temporary);
+			written = true;
+		} finally {
+			if (!written) {
+				Files.deleteIfExists(temporary);
+			}
+		}
+
+		final BasicFileAttributes after = Files.readAttributes(source,
+				BasicFileAttributes.class);
+		final long length = Files.size(temporary);
+		if (length > maxSize || after.size() != before.size()
+				|| !after.lastModifiedTime().equals(before.lastModifiedTime())) {
+			return new TemporaryReader(open(temporary, charset), temporary);
+		}
+
+		synchronized (this) {
+			Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			final Long previous = entries.put(key, length);
+			size += length - (previous != null ? previous : 0);
+			evict(maxSize);
+			return open(entry, charset);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries until the size of all entries
+	 * is within the limit.
+	 *
+	 * @param limit
+	 *            the limit
+	 */
+	private synchronized void evict(final long limit) {
+		final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet()
+				.iterator();
+		while (size > limit && iterator.hasNext()) {
+			final Map.Entry<String, Long> next = iterator.next();
+			delete(next.getKey());
+			size -= next.getValue();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Deletes the file of an entry.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	private void delete(final String key) {
+		try {
+			Files.deleteIfExists(directory.resolve(key + ENTRY_SUFFIX));
+		} catch (final IOException e) {
+			// still open elsewhere, forget it anyway
+		}
+	}
+
+	/**
+	 * Computes the key of the output of the pipeline for the source file.
+	 *
+	 * @param pipeline
+	 *            the pipeline
+	 * @param source
+	 *            the source file
+	 * @param charset
+	 *            the charset
+	 * @param attributes
+	 *            the attributes of the source file
+	 * @return the key as a hex string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String getKey(final Pipeline pipeline, final Path source,
+			final Charset charset, final BasicFileAttributes attributes)
+			throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(pipeline.getFingerprint()).append('\n')
+				.append(charset.name()).append('\n');
+		if (hashContents) {
+			builder.append("contents ").append(hash(source));
+		} else {
+			builder.append("file ").append(source.toRealPath()).append('\n')
+					.append(attributes.size()).append('\n')
+					.append(attributes.lastModifiedTime()).append('\n')
+					.append(attributes.fileKey());
+		}
+		return PipelineFingerprint.toHex(PipelineFingerprint.sha256(builder
+				.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Hashes the contents of the file with SHA-256.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the hash as a hex string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static String hash(final Path file) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+
+		final InputStream in = Files.newInputStream(file);
+		try {
+			final byte[] buffer = new byte[HASH_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return PipelineFingerprint.toHex(digest.digest());
+	}
+
+	/**
+	 * Opens an output file.
+	 *
+	 * @param file
+	 *            the file
+	 * @param charset
+	 *            the charset
+	 * @return the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static Reader open(final Path file, final Charset charset)
+			throws IOException {
+		final InputStream in = Files.newInputStream(file);
+		if (DecodingReader.hasAsciiFastPath(charset)) {
+			return new DecodingReader(in, charset);
+		}
+		return new InputStreamReader(in, charset);
+	}
+
+	/**
+	 * Gets the number of reads served from the cache.
+	 *
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of reads that mogrified the source.
+	 *
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the size of all entries in bytes.
+	 *
+	 * @return the size
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		for (final String key : entries.keySet()) {
+			delete(key);
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ResultCache [directory=" + directory + ", maxSize=" + maxSize
+				+ ", hashContents=" + hashContents + "]";
+	}
+
+	/**
+	 * Reads output that is not stored and deletes it once closed.
+	 */
+	private static final class TemporaryReader extends FilterReader {
+
+		/** The file. */
+		private final Path file;
+
+		/**
+		 * Instantiates a new temporary reader.
+		 *
+		 * @param in
+		 *            the in
+		 * @param file
+		 *            the file
+		 */
+		private TemporaryReader(final Reader in, final Path file) {
+			super(in);
+			this.file = file;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterReader#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.automata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An Aho-Corasick automaton over a set of keywords. Scanning a line visits
+ * every symbol once, independent of the number of keywords.
+ *
+ * Keywords are either strings, matched against chars, or byte arrays, matched
+ * against bytes. The transitions of the root are kept in a table indexed by
+ * symbol, all other transitions in sorted arrays.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class AhoCorasick {
+
+	/** The Constant ROOT. */
+	private static final int ROOT = 0;
+
+	/** The transitions of the root, indexed by symbol. */
+	private final int[] rootTargets;
+
+	/** The symbols of the transitions per state, sorted. */
+	private final int[][] symbols;
+
+	/** The targets of the transitions per state. */
+	private final int[][] targets;
+
+	/** The failure link per state. */
+	private final int[] failures;
+
+	/** The length of the string spelled by each state. */
+	private final int[] depths;
+
+	/**
+	 * The length of the longest keyword that ends in each state, following
+	 * failure links, or 0 if none.
+	 */
+	private final int[] matchLengths;
+
+	/**
+	 * The index of the longest keyword that ends in each state, following
+	 * failure links, or -1 if none.
+	 */
+	private final int[] matchIndexes;
+
+	/** If <code>true</code>, the empty keyword matches everywhere. */
+	private final boolean matchesEmpty;
+
+	/**
+	 * Instantiates a new aho corasick automaton.
+	 *
+	 * @param keywords
+	 *            the keywords as symbol arrays
+	 * @param alphabetSize
+	 *            the number of symbols
+	 */
+	private AhoCorasick(final List<int[]> keywords, final int alphabetSize) {
+		final List<Map<Integer, Integer>> transitions = Lists.newArrayList();
+		final List<Integer> depthList = Lists.newArrayList();
+		final List<Integer> terminals = Lists.newArrayList();
+		transitions.add(new TreeMap<Integer, Integer>());
+		depthList.add(0);
+		terminals.add(-1);
+
+		// the trie
+		boolean empty = false;
+		for (int k = 0; k < keywords.size(); k++) {
+			final int[] keyword = keywords.get(k);
+			if (keyword.length == 0) {
+				empty = true;
+			}
+
+			int state = ROOT;
+			for (final int symbol : keyword) {
+				Integer next = transitions.get(state).get(symbol);
+				if (next == null) {
+					next = transitions.size();
+					transitions.get(state).put(symbol, next);
+					transitions.add(new TreeMap<Integer, Integer>());
+					depthList.add(depthList.get(state) + 1);
+					terminals.add(-1);
+				}
+				state = next;
+			}
+			if (terminals.get(state) < 0) {
+				terminals.set(state, k);
+			}
+		}
+		matchesEmpty = empty;
+
+		final int size = transitions.size();
+		symbols = new int[size][];
+		targets = new int[size][];
+		failures = new int[size];
+		depths = new int[size];
+		matchLengths = new int[size];
+		matchIndexes = new int[size];
+		for (int state = 0; state < size; state++) {
+			final Map<Integer, Integer> map = transitions.get(state);
+			symbols[state] = new int[map.size()];
+			targets[state] = new int[map.size()];
+			int i = 0;
+			for (final Map.Entry<Integer, Integer> entry : map.entrySet()) {
+				symbols[state][i] = entry.getKey();
+				targets[state][i] = entry.getValue();
+				i++;
+			}
+			depths[state] = depthList.get(state);
+			matchIndexes[state] = terminals.get(state);
+			if (matchIndexes[state] >= 0) {
+				matchLengths[state] = depths[state];
+			}
+		}
+
+		rootTargets = new int[alphabetSize];
+		for (int i = 0; i < symbols[ROOT].length; i++) {
+			rootTargets[symbols[ROOT][i]] = targets[ROOT][i];
+		}
+
+		// the failure links, breadth first
+		final Queue<Integer> queue = new LinkedList<Integer>();
+		for (final int child : targets[ROOT]) {
+			failures[child] = ROOT;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			final int state = queue.remove();
+			for (int i = 0; i < symbols[state].length; i++) {
+				final int child = targets[state][i];
+				final int failure = next(failures[state], symbols[state][i]);
+				failures[child] = failure;
+				if (matchIndexes[child] < 0) {
+					matchLengths[child] = matchLengths[failure];
+					matchIndexes[child] = matchIndexes[failure];
+				}
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Creates an automaton matching the strings.
+	 *
+	 * @param keywords
+	 *            the keywords
+	 * @return the aho corasick
+	 */
+	public static AhoCorasick forStrings(final Collection<String> keywords) {
+		final List<int[]> list = Lists.newArrayListWithCapacity(keywords
+				.size());
+		for (final String keyword : keywords) {
+			final int[] symbols = new int[keyword.length()];
+			for (int i = 0; i < symbols.length; i++) {
+				symbols[i] = keyword.charAt(i);
+			}
+			list.add(symbols);
+		}
+		return new AhoCorasick(list, Character.MAX_VALUE + 1);
+	}
+
+	/**
+	 * Creates an automaton matching the byte arrays.
+	 *
+	 * @param keywords
+	 *            the keywords
+	 * @return the aho corasick
+	 */
+	public static AhoCorasick forBytes(final Collection<byte[]> keywords) {
+		final List<int[]> list = Lists.newArrayListWithCapacity(keywords
+				.size());
+		for (final byte[] keyword : keywords) {
+			final int[] symbols = new int[keyword.length];
+			for (int i = 0; i < symbols.length; i++) {
+				symbols[i] = keyword[i] & 0xff;
+			}
+			list.add(symbols);
+		}
+		return new AhoCorasick(list, 256);
+	}
+
+	/**
+	 * Follows the transition for the symbol from the state, falling back along
+	 * the failure links if there is none.
+	 *
+	 * @param state
+	 *            the state
+	 * @param symbol
+	 *            the symbol
+	 * @return the next state
+	 */
+	private int next(int state, final int symbol) {
+		while (state != ROOT) {
+			final int index = Arrays.binarySearch(symbols[state], symbol);
+			if (index >= 0) {
+				return targets[state][index];
+			}
+			state = failures[state];
+		}
+		return rootTargets[symbol];
+	}
+
+	/**
+	 * Checks if any keyword occurs in the sequence.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @return true, if successful
+	 */
+	public boolean containsAny(final CharSequence sequence) {
+		if (matchesEmpty) {
+			return true;
+		}
+
+		int state = ROOT;
+		final int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			state = next(state, sequence.charAt(i));
+			if (matchLengths[state] > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if any keyword occurs in the bytes.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return true, if successful
+	 */
+	public boolean containsAny(final byte[] bytes, final int offset,
+			final int length) {
+		if (matchesEmpty) {
+			return true;
+		}
+
+		int state = ROOT;
+		final int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			state = next(state, bytes[i] & 0xff);
+			if (matchLengths[state] > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the leftmost-longest occurrence of a keyword, starting at the
+	 * given index: of all occurrences the one that starts first, and of those
+	 * the longest. Scanning stops as soon as no longer or further left
+	 * occurrence is possible.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @param from
+	 *            the index to start from
+	 * @param keyword
+	 *            receives the index of the keyword found in its first element
+	 * @return the index of the occurrence, or -1 if there is none
+	 */
+	public int indexOf(final CharSequence sequence, final int from,
+			final int[] keyword) {
+		int bestStart = -1;
+		int bestLength = 0;
+		int state = ROOT;
+		final int length = sequence.length();
+		for (int i = from; i < length; i++) {
+			state = next(state, sequence.charAt(i));
+
+			final int matchLength = matchLengths[state];
+			if (matchLength > 0) {
+				final int start = i - matchLength + 1;
+				if (bestStart < 0 || start < bestStart
+						|| (start == bestStart && matchLength > bestLength)) {
+					bestStart = start;
+					bestLength = matchLength;
+					keyword[0] = matchIndexes[state];
+				}
+			}
+
+			// no occurrence still open starts at or before the best one
+			if (bestStart >= 0 && depths[state] <= i - bestStart) {
+				break;
+			}
+		}
+		return bestStart;
+	}
+
+	/**
+	 * Gets the number of states.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return failures.length;
+	}
+
+}
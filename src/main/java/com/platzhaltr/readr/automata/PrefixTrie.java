@@ -0,0 +1,262 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.automata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A trie over a set of prefixes. Matching a line against all prefixes is a
+ * single walk from the start of the line, bounded by the longest prefix.
+ *
+ * Prefixes are either strings, matched against chars, or byte arrays, matched
+ * against bytes. Transitions are kept in sorted arrays per state.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class PrefixTrie {
+
+	/** The Constant ROOT. */
+	private static final int ROOT = 0;
+
+	/** The Constant NO_MATCH. */
+	public static final int NO_MATCH = -1;
+
+	/** The symbols of the transitions per state, sorted. */
+	private final int[][] symbols;
+
+	/** The targets of the transitions per state. */
+	private final int[][] targets;
+
+	/** If <code>true</code>, a prefix ends in the state. */
+	private final boolean[] terminals;
+
+	/**
+	 * Instantiates a new prefix trie.
+	 *
+	 * @param prefixes
+	 *            the prefixes as symbol arrays
+	 */
+	private PrefixTrie(final List<int[]> prefixes) {
+		final List<Map<Integer, Integer>> transitions = Lists.newArrayList();
+		final List<Boolean> terminalList = Lists.newArrayList();
+		transitions.add(new TreeMap<Integer, Integer>());
+		terminalList.add(false);
+
+		for (final int[] prefix : prefixes) {
+			int state = ROOT;
+			for (final int symbol : prefix) {
+				Integer next = transitions.get(state).get(symbol);
+				if (next == null) {
+					next = transitions.size();
+					transitions.get(state).put(symbol, next);
+					transitions.add(new TreeMap<Integer, Integer>());
+					terminalList.add(false);
+				}
+				state = next;
+			}
+			terminalList.set(state, true);
+		}
+
+		final int size = transitions.size();
+		symbols = new int[size][];
+		targets = new int[size][];
+		terminals = new boolean[size];
+		for (int state = 0; state < size; state++) {
+			final Map<Integer, Integer> map = transitions.get(state);
+			symbols[state] = new int[map.size()];
+			targets[state] = new int[map.size()];
+			int i = 0;
+			for (final Map.Entry<Integer, Integer> entry : map.entrySet()) {
+				symbols[state][i] = entry.getKey();
+				targets[state][i] = entry.getValue();
+				i++;
+			}
+			terminals[state] = terminalList.get(state);
+		}
+	}
+
+	/**
+	 * Creates a trie matching the strings.
+	 *
+	 * @param prefixes
+	 *            the prefixes
+	 * @return the prefix trie
+	 */
+	public static PrefixTrie forStrings(final Collection<String> prefixes) {
+		final List<int[]> list = Lists.newArrayListWithCapacity(prefixes
+				.size());
+		for (final String prefix : prefixes) {
+			final int[] symbols = new int[prefix.length()];
+			for (int i = 0; i < symbols.length; i++) {
+				symbols[i] = prefix.charAt(i);
+			}
+			list.add(symbols);
+		}
+		return new PrefixTrie(list);
+	}
+
+	/**
+	 * Creates a trie matching the byte arrays.
+	 *
+	 * @param prefixes
+	 *            the prefixes
+	 * @return the prefix trie
+	 */
+	public static PrefixTrie forBytes(final Collection<byte[]> prefixes) {
+		final List<int[]> list = Lists.newArrayListWithCapacity(prefixes
+				.size());
+		for (final byte[] prefix : prefixes) {
+			final int[] symbols = new int[prefix.length];
+			for (int i = 0; i < symbols.length; i++) {
+				symbols[i] = prefix[i] & 0xff;
+			}
+			list.add(symbols);
+		}
+		return new PrefixTrie(list);
+	}
+
+	/**
+	 * Follows the transition for the symbol from the state.
+	 *
+	 * @param state
+	 *            the state
+	 * @param symbol
+	 *            the symbol
+	 * @return the next state, or -1 if there is none
+	 */
+	private int next(final int state, final int symbol) {
+		final int index = Arrays.binarySearch(symbols[state], symbol);
+		if (index < 0) {
+			return -1;
+		}
+		return targets[state][index];
+	}
+
+	/**
+	 * Returns the length of the longest prefix the sequence starts with.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @return the length, or {@link #NO_MATCH}
+	 */
+	public int longestMatch(final CharSequence sequence) {
+		int match = terminals[ROOT] ? 0 : NO_MATCH;
+		int state = ROOT;
+		final int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			state = next(state, sequence.charAt(i));
+			if (state < 0) {
+				break;
+			}
+			if (terminals[state]) {
+				match = i + 1;
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Returns the length of the longest prefix the bytes start with.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return the length, or {@link #NO_MATCH}
+	 */
+	public int longestMatch(final byte[] bytes, final int offset,
+			final int length) {
+		int match = terminals[ROOT] ? 0 : NO_MATCH;
+		int state = ROOT;
+		for (int i = 0; i < length; i++) {
+			state = next(state, bytes[offset + i] & 0xff);
+			if (state < 0) {
+				break;
+			}
+			if (terminals[state]) {
+				match = i + 1;
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Checks if the sequence starts with any prefix. Stops at the shortest
+	 * matching prefix.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @return true, if successful
+	 */
+	public boolean matchesAny(final CharSequence sequence) {
+		if (terminals[ROOT]) {
+			return true;
+		}
+
+		int state = ROOT;
+		final int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			state = next(state, sequence.charAt(i));
+			if (state < 0) {
+				return false;
+			}
+			if (terminals[state]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the bytes start with any prefix. Stops at the shortest matching
+	 * prefix.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @return true, if successful
+	 */
+	public boolean matchesAny(final byte[] bytes, final int offset,
+			final int length) {
+		if (terminals[ROOT]) {
+			return true;
+		}
+
+		int state = ROOT;
+		for (int i = 0; i < length; i++) {
+			state = next(state, bytes[offset + i] & 0xff);
+			if (state < 0) {
+				return false;
+			}
+			if (terminals[state]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,1081 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.automata;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An automaton deciding if a line as a whole matches any of several regular
+ * expressions. Scanning a line visits every code point once, independent of
+ * the number of regular expressions.
+ *
+ * The regular expressions are compiled into one nondeterministic automaton,
+ * which is turned into a deterministic one lazily, while lines are scanned.
+ * Each thread builds its own deterministic states; their number is bounded,
+ * and the states are discarded and rebuilt if the bound is hit.
+ *
+ * Only the regular subset of {@link Pattern} is supported: literals, character
+ * classes, <code>.</code>, groups, alternations and greedy or reluctant
+ * quantifiers. Anchors are only supported at the very start and end. See
+ * {@link #isSupported(String)}. Single characters are tested with
+ * {@link Pattern} itself, so character classes mean exactly the same.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class RegexAutomaton {
+
+	/** The Constant CONSUME, a state consuming a code point. */
+	private static final int CONSUME = 0;
+
+	/** The Constant SPLIT, a state with epsilon transitions only. */
+	private static final int SPLIT = 1;
+
+	/** The Constant ACCEPT, the accepting state. */
+	private static final int ACCEPT = 2;
+
+	/** The maximum number of states of the nondeterministic automaton. */
+	private static final int MAX_STATES = 10000;
+
+	/** The maximum number of repetitions that are unrolled. */
+	private static final int MAX_REPETITIONS = 100;
+
+	/** The maximum number of deterministic states per thread. */
+	private static final int MAX_DFA_STATES = 4096;
+
+	/** The type per state. */
+	private final int[] types;
+
+	/**
+	 * The code point a consuming state accepts, or -1 - the index of the
+	 * atom.
+	 */
+	private final int[] symbols;
+
+	/** The targets per state. */
+	private final int[][] outs;
+
+	/** The atoms, patterns matching a single code point. */
+	private final Pattern[] atoms;
+
+	/** The start state. */
+	private final int start;
+
+	/** The deterministic automaton per thread. */
+	private final ThreadLocal<Dfa> dfas = new ThreadLocal<Dfa>() {
+
+		@Override
+		protected Dfa initialValue() {
+			return new Dfa(types, symbols, outs, atoms, start);
+		}
+
+	};
+
+	/**
+	 * Instantiates a new regex automaton.
+	 *
+	 * @param builder
+	 *            the builder holding the states
+	 * @param starts
+	 *            the start states of the regular expressions
+	 */
+	private RegexAutomaton(final Builder builder, final List<Integer> starts) {
+		final int startState = builder.newState(SPLIT, 0);
+		builder.outs.set(startState, toArray(starts));
+
+		final int size = builder.types.size();
+		types = new int[size];
+		symbols = new int[size];
+		outs = new int[size][];
+		for (int state = 0; state < size; state++) {
+			types[state] = builder.types.get(state);
+			symbols[state] = builder.symbols.get(state);
+			outs[state] = builder.outs.get(state);
+		}
+		atoms = builder.atoms.toArray(new Pattern[builder.atoms.size()]);
+		start = startState;
+	}
+
+	/**
+	 * Checks if the regular expression is in the supported subset.
+	 *
+	 * @param regex
+	 *            the regex, which must compile
+	 * @return true, if supported
+	 */
+	public static boolean isSupported(final String regex) {
+		final Builder builder = new Builder();
+		return builder.add(regex) >= 0;
+	}
+
+	/**
+	 * Creates an automaton matching the regular expressions. All of them must
+	 * be supported.
+	 *
+	 * @param regexes
+	 *            the regexes
+	 * @return the regex automaton
+	 */
+	public static RegexAutomaton forRegexes(final Collection<String> regexes) {
+		final Builder builder = new Builder();
+		final List<Integer> starts = Lists.newArrayListWithCapacity(regexes
+				.size());
+		for (final String regex : regexes) {
+			final int state = builder.add(regex);
+			if (state < 0) {
+				throw new IllegalArgumentException("Unsupported regex: "
+						+ regex);
+			}
+			starts.add(state);
+		}
+		return new RegexAutomaton(builder, starts);
+	}
+
+	/**
+	 * Checks if the sequence as a whole matches any regular expression.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @return true, if successful
+	 */
+	public boolean matchesAny(final CharSequence sequence) {
+		final Dfa dfa = dfas.get();
+		int state = dfa.start();
+		final int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			int codePoint = sequence.charAt(i);
+			if (Character.isHighSurrogate((char) codePoint) && i + 1 < length
+					&& Character.isLowSurrogate(sequence.charAt(i + 1))) {
+				codePoint = Character.toCodePoint((char) codePoint,
+						sequence.charAt(++i));
+			}
+			state = dfa.next(state, codePoint);
+			if (state == Dfa.DEAD) {
+				return false;
+			}
+		}
+		return dfa.accepting(state);
+	}
+
+	/**
+	 * Gets the number of states of the nondeterministic automaton.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	/**
+	 * Converts the list to an array.
+	 *
+	 * @param list
+	 *            the list
+	 * @return the int[]
+	 */
+	private static int[] toArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * The deterministic automaton of one thread. Its states are sets of
+	 * nondeterministic states, built on first use. It only refers to the
+	 * states of the nondeterministic automaton, not to the automaton itself,
+	 * so a thread using it does not keep the automaton reachable.
+	 */
+	private static class Dfa {
+
+		/** The Constant DEAD, the state without any way to accept. */
+		static final int DEAD = 0;
+
+		/** The Constant UNKNOWN, a transition not built yet. */
+		private static final int UNKNOWN = -1;
+
+		/** The Constant ASCII. */
+		private static final int ASCII = 128;
+
+		/** The sets of nondeterministic states per state. */
+		private final List<BitSet> sets = Lists.newArrayList();
+
+		/** The states by set. */
+		private final Map<BitSet, Integer> states = Maps.newHashMap();
+
+		/** The transitions per state for ASCII code points. */
+		private final List<int[]> asciiTargets = Lists.newArrayList();
+
+		/** The transitions per state for all other code points. */
+		private final List<Map<Integer, Integer>> otherTargets = Lists
+				.newArrayList();
+
+		/** If <code>true</code>, the state accepts. */
+		private final BitSet accepting = new BitSet();
+
+		/** The type per nondeterministic state. */
+		private final int[] types;
+
+		/** The code point or atom per nondeterministic state. */
+		private final int[] symbols;
+
+		/** The targets per nondeterministic state. */
+		private final int[][] outs;
+
+		/** The atoms. */
+		private final Pattern[] atoms;
+
+		/** The nondeterministic start state. */
+		private final int nfaStart;
+
+		/** The start state. */
+		private int startState;
+
+		/**
+		 * Instantiates a new dfa.
+		 *
+		 * @param types
+		 *            the type per nondeterministic state
+		 * @param symbols
+		 *            the code point or atom per nondeterministic state
+		 * @param outs
+		 *            the targets per nondeterministic state
+		 * @param atoms
+		 *            the atoms
+		 * @param nfaStart
+		 *            the nondeterministic start state
+		 */
+		Dfa(final int[] types, final int[] symbols, final int[][] outs,
+				final Pattern[] atoms, final int nfaStart) {
+			this.types = types;
+			this.symbols = symbols;
+			this.outs = outs;
+			this.atoms = atoms;
+			this.nfaStart = nfaStart;
+			reset();
+		}
+
+		/**
+		 * Discards all states.
+		 */
+		private void reset() {
+			sets.clear();
+			states.clear();
+			asciiTargets.clear();
+			otherTargets.clear();
+			accepting.clear();
+			state(new BitSet());
+			final BitSet set = new BitSet();
+			close(set, nfaStart);
+			startState = state(set);
+		}
+
+		/**
+		 * Gets the start state.
+		 *
+		 * @return the start state
+		 */
+		int start() {
+			return startState;
+		}
+
+		/**
+		 * Checks if the state accepts.
+		 *
+		 * @param state
+		 *            the state
+		 * @return true, if successful
+		 */
+		boolean accepting(final int state) {
+			return accepting.get(state);
+		}
+
+		/**
+		 * Gets the state for the set, adding it if it is new.
+		 *
+		 * @param set
+		 *            the set
+		 * @return the state
+		 */
+		private int state(final BitSet set) {
+			final Integer known = states.get(set);
+			if (known != null) {
+				return known;
+			}
+
+			final int state = sets.size();
+			sets.add(set);
+			states.put(set, state);
+			final int[] ascii = new int[ASCII];
+			Arrays.fill(ascii, UNKNOWN);
+			asciiTargets.add(ascii);
+			otherTargets.add(Maps.<Integer, Integer> newHashMap());
+			for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+				if (types[s] == ACCEPT) {
+					accepting.set(state);
+					break;
+				}
+			}
+			return state;
+		}
+
+		/**
+		 * Follows the transition for the code point from the state.
+		 *
+		 * @param state
+		 *            the state
+		 * @param codePoint
+		 *            the code point
+		 * @return the next state
+		 */
+		int next(final int state, final int codePoint) {
+			if (codePoint < ASCII) {
+				final int target = asciiTargets.get(state)[codePoint];
+				if (target != UNKNOWN) {
+					return target;
+				}
+			} else {
+				final Integer target = otherTargets.get(state).get(codePoint);
+				if (target != null) {
+					return target;
+				}
+			}
+
+			final BitSet from = sets.get(state);
+			final BitSet to = new BitSet();
+			for (int s = from.nextSetBit(0); s >= 0; s = from.nextSetBit(s + 1)) {
+				if (types[s] == CONSUME && accepts(s, codePoint)) {
+					close(to, outs[s][0]);
+				}
+			}
+
+			int fromState = state;
+			if (!states.containsKey(to) && sets.size() >= MAX_DFA_STATES) {
+				reset();
+				fromState = state(from);
+			}
+			final int target = state(to);
+			if (codePoint < ASCII) {
+				asciiTargets.get(fromState)[codePoint] = target;
+			} else {
+				otherTargets.get(fromState).put(codePoint, target);
+			}
+			return target;
+		}
+
+		/**
+		 * Adds the epsilon closure of the state to the set.
+		 *
+		 * @param set
+		 *            the set
+		 * @param state
+		 *            the state
+		 */
+		private void close(final BitSet set, final int state) {
+			final Deque<Integer> stack = new ArrayDeque<Integer>();
+			stack.push(state);
+			while (!stack.isEmpty()) {
+				final int current = stack.pop();
+				if (set.get(current)) {
+					continue;
+				}
+				set.set(current);
+				if (types[current] == SPLIT) {
+					for (final int out : outs[current]) {
+						stack.push(out);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Checks if the consuming state accepts the code point.
+		 *
+		 * @param state
+		 *            the state
+		 * @param codePoint
+		 *            the code point
+		 * @return true, if successful
+		 */
+		private boolean accepts(final int state, final int codePoint) {
+			final int symbol = symbols[state];
+			if (symbol >= 0) {
+				return symbol == codePoint;
+			}
+			return atoms[-1 - symbol].matcher(
+					new String(Character.toChars(codePoint))).matches();
+		}
+
+	}
+
+	/**
+	 * Parses regular expressions and builds the states of the
+	 * nondeterministic automaton. States are built back to front, each one
+	 * knowing its targets.
+	 */
+	private static class Builder {
+
+		/** The types. */
+		final List<Integer> types = Lists.newArrayList();
+
+		/** The symbols. */
+		final List<Integer> symbols = Lists.newArrayList();
+
+		/** The outs. */
+		final List<int[]> outs = Lists.newArrayList();
+
+		/** The atoms. */
+		final List<Pattern> atoms = Lists.newArrayList();
+
+		/** The atoms by their regular expression. */
+		private final Map<String, Integer> atomIndexes = Maps.newHashMap();
+
+		/** The regex being parsed. */
+		private String regex;
+
+		/** The position in the regex. */
+		private int position;
+
+		/**
+		 * Parses the regular expression and adds its states.
+		 *
+		 * @param regex
+		 *            the regex
+		 * @return the start state, or -1 if the regex is not supported
+		 */
+		int add(final String regex) {
+			this.regex = regex;
+			position = 0;
+			final int size = types.size();
+			final int atomSize = atoms.size();
+			try {
+				final Node node = parseAlternation(true);
+				if (position != regex.length()) {
+					throw new UnsupportedOperationException();
+				}
+				return node.compile(this, newState(ACCEPT, 0));
+			} catch (final UnsupportedOperationException e) {
+				truncate(types, size);
+				truncate(symbols, size);
+				truncate(outs, size);
+				truncate(atoms, atomSize);
+				atomIndexes.clear();
+				for (int i = 0; i < atoms.size(); i++) {
+					atomIndexes.put(atoms.get(i).pattern(), i);
+				}
+				return -1;
+			}
+		}
+
+		/**
+		 * Truncates the list.
+		 *
+		 * @param list
+		 *            the list
+		 * @param size
+		 *            the size
+		 */
+		private static void truncate(final List<?> list, final int size) {
+			list.subList(size, list.size()).clear();
+		}
+
+		/**
+		 * Adds a new state.
+		 *
+		 * @param type
+		 *            the type
+		 * @param symbol
+		 *            the symbol
+		 * @return the state
+		 */
+		int newState(final int type, final int symbol) {
+			types.add(type);
+			symbols.add(symbol);
+			outs.add(new int[0]);
+			if (types.size() > MAX_STATES) {
+				throw new UnsupportedOperationException();
+			}
+			return types.size() - 1;
+		}
+
+		/**
+		 * Adds a split state.
+		 *
+		 * @param targets
+		 *            the targets
+		 * @return the state
+		 */
+		int split(final int... targets) {
+			final int state = newState(SPLIT, 0);
+			outs.set(state, targets);
+			return state;
+		}
+
+		/**
+		 * Gets the index of the atom, adding it if it is new.
+		 *
+		 * @param atom
+		 *            the regular expression of the atom
+		 * @return the index
+		 */
+		int atom(final String atom) {
+			Integer index = atomIndexes.get(atom);
+			if (index == null) {
+				index = atoms.size();
+				atoms.add(Pattern.compile(atom));
+				atomIndexes.put(atom, index);
+			}
+			return index;
+		}
+
+		/**
+		 * Checks if the end of the regex has been reached.
+		 *
+		 * @return true, if successful
+		 */
+		private boolean atEnd() {
+			return position >= regex.length();
+		}
+
+		/**
+		 * Gets the char at the position.
+		 *
+		 * @return the char
+		 */
+		private char peek() {
+			return regex.charAt(position);
+		}
+
+		/**
+		 * Parses alternatives.
+		 *
+		 * @param topLevel
+		 *            if <code>true</code>, the alternatives are not in a group
+		 * @return the node
+		 */
+		private Node parseAlternation(final boolean topLevel) {
+			final List<Node> alternatives = Lists.newArrayList();
+			alternatives.add(parseSequence(topLevel));
+			while (!atEnd() && peek() == '|') {
+				position++;
+				alternatives.add(parseSequence(topLevel));
+			}
+			if (alternatives.size() == 1) {
+				return alternatives.get(0);
+			}
+			return new Alternation(alternatives);
+		}
+
+		/**
+		 * Parses a sequence of quantified atoms.
+		 *
+		 * @param topLevel
+		 *            if <code>true</code>, the sequence is not in a group
+		 * @return the node
+		 */
+		private Node parseSequence(final boolean topLevel) {
+			final List<Node> nodes = Lists.newArrayList();
+			while (!atEnd() && peek() != '|' && peek() != ')') {
+				// anchors are only trivial at the very start and end
+				if (peek() == '^') {
+					if (!topLevel || position != 0) {
+						throw new UnsupportedOperationException();
+					}
+					position++;
+					continue;
+				}
+				if (peek() == '$') {
+					if (!topLevel || position != regex.length() - 1) {
+						throw new UnsupportedOperationException();
+					}
+					position++;
+					continue;
+				}
+				nodes.add(parseQuantifier(parseAtom()));
+			}
+			return new Sequence(nodes);
+		}
+
+		/**
+		 * Parses the quantifier following an atom, if any.
+		 *
+		 * @param atom
+		 *            the atom
+		 * @return the node
+		 */
+		private Node parseQuantifier(final Node atom) {
+			if (atEnd()) {
+				return atom;
+			}
+
+			int min;
+			int max;
+			final char c = peek();
+			if (c == '?') {
+				min = 0;
+				max = 1;
+				position++;
+			} else if (c == '*') {
+				min = 0;
+				max = -1;
+				position++;
+			} else if (c == '+') {
+				min = 1;
+				max = -1;
+				position++;
+			} else if (c == '{') {
+				final int close = regex.indexOf('}', position);
+				if (close < 0) {
+					throw new UnsupportedOperationException();
+				}
+				final String bounds = regex.substring(position + 1, close);
+				final int comma = bounds.indexOf(',');
+				try {
+					if (comma < 0) {
+						min = Integer.parseInt(bounds.trim());
+						max = min;
+					} else {
+						min = Integer.parseInt(bounds.substring(0, comma)
+								.trim());
+						final String upper = bounds.substring(comma + 1).trim();
+						max = upper.isEmpty() ? -1 : Integer.parseInt(upper);
+					}
+				} catch (final NumberFormatException e) {
+					throw new UnsupportedOperationException();
+				}
+				if (min > MAX_REPETITIONS || max > MAX_REPETITIONS) {
+					throw new UnsupportedOperationException();
+				}
+				position = close + 1;
+			} else {
+				return atom;
+			}
+
+			if (!atEnd()) {
+				// reluctant quantifiers match the same lines
+				if (peek() == '?') {
+					position++;
+				}
+				// possessive and stacked quantifiers do not
+				if (!atEnd() && "?*+{".indexOf(peek()) >= 0) {
+					throw new UnsupportedOperationException();
+				}
+			}
+			return new Repetition(atom, min, max);
+		}
+
+		/**
+		 * Parses an atom.
+		 *
+		 * @return the node
+		 */
+		private Node parseAtom() {
+			final char c = peek();
+			if (c == '(') {
+				position++;
+				if (!atEnd() && peek() == '?') {
+					if (regex.startsWith("?:", position)) {
+						position += 2;
+					} else if (regex.startsWith("?<", position)
+							&& position + 2 < regex.length()
+							&& Character.isLetter(regex.charAt(position + 2))) {
+						// a named group, without back references
+						position = regex.indexOf('>', position) + 1;
+					} else {
+						// lookaround, atomic groups and flags
+						throw new UnsupportedOperationException();
+					}
+				}
+				final Node node = parseAlternation(false);
+				if (atEnd() || peek() != ')') {
+					throw new UnsupportedOperationException();
+				}
+				position++;
+				return node;
+			}
+			if (c == '[') {
+				final int end = skipClass();
+				final String atom = regex.substring(position, end);
+				position = end;
+				return new Atom(atom);
+			}
+			if (c == '.') {
+				position++;
+				return new Atom(".");
+			}
+			if (c == '\\') {
+				return parseEscape();
+			}
+			if ("*+?{)".indexOf(c) >= 0) {
+				throw new UnsupportedOperationException();
+			}
+			final int codePoint = regex.codePointAt(position);
+			position += Character.charCount(codePoint);
+			return new Literal(codePoint);
+		}
+
+		/**
+		 * Parses an escape sequence matching a single code point.
+		 *
+		 * @return the node
+		 */
+		private Node parseEscape() {
+			final int begin = position;
+			if (position + 1 >= regex.length()) {
+				throw new UnsupportedOperationException();
+			}
+			final char c = regex.charAt(position + 1);
+			position += 2;
+			if (!Character.isLetterOrDigit(c)) {
+				return new Literal(c);
+			}
+
+			switch (c) {
+			case 'd':
+			case 'D':
+			case 's':
+			case 'S':
+			case 'w':
+			case 'W':
+			case 'h':
+			case 'H':
+			case 'v':
+			case 'V':
+			case 't':
+			case 'n':
+			case 'r':
+			case 'f':
+			case 'a':
+			case 'e':
+				break;
+			case 'c':
+				position++;
+				break;
+			case 'p':
+			case 'P':
+				if (!atEnd() && peek() == '{') {
+					position = regex.indexOf('}', position) + 1;
+					if (position == 0) {
+						throw new UnsupportedOperationException();
+					}
+				} else {
+					position++;
+				}
+				break;
+			case 'x':
+				if (!atEnd() && peek() == '{') {
+					position = regex.indexOf('}', position) + 1;
+					if (position == 0) {
+						throw new UnsupportedOperationException();
+					}
+				} else {
+					position += 2;
+				}
+				break;
+			case 'u':
+				position += 4;
+				break;
+			case '0':
+				// up to three octal digits, the first at most 3
+				int digits = 0;
+				while (!atEnd() && digits < 3 && peek() >= '0' && peek() <= '7') {
+					if (digits == 2 && regex.charAt(position - 2) > '3') {
+						break;
+					}
+					position++;
+					digits++;
+				}
+				break;
+			default:
+				// boundaries, back references, quoting and line breaks
+				throw new UnsupportedOperationException();
+			}
+			if (position > regex.length()) {
+				throw new UnsupportedOperationException();
+			}
+			return new Atom(regex.substring(begin, position));
+		}
+
+		/**
+		 * Finds the end of the character class at the position, which may
+		 * contain nested classes.
+		 *
+		 * @return the index after the closing bracket
+		 */
+		private int skipClass() {
+			int depth = 0;
+			int i = position;
+			while (i < regex.length()) {
+				final char c = regex.charAt(i);
+				if (c == '\\') {
+					if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+						throw new UnsupportedOperationException();
+					}
+					i += 2;
+					continue;
+				}
+				if (c == '[') {
+					depth++;
+					i++;
+					// a leading ] is literal
+					if (i < regex.length() && regex.charAt(i) == '^') {
+						i++;
+					}
+					if (i < regex.length() && regex.charAt(i) == ']') {
+						i++;
+					}
+					continue;
+				}
+				if (c == ']' && --depth == 0) {
+					return i + 1;
+				}
+				i++;
+			}
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	/**
+	 * A node of a parsed regular expression.
+	 */
+	private interface Node {
+
+		/**
+		 * Builds the states of the node.
+		 *
+		 * @param builder
+		 *            the builder
+		 * @param next
+		 *            the state following the node
+		 * @return the first state of the node
+		 */
+		int compile(Builder builder, int next);
+
+	}
+
+	/**
+	 * A literal code point.
+	 */
+	private static class Literal implements Node {
+
+		/** The code point. */
+		private final int codePoint;
+
+		/**
+		 * Instantiates a new literal.
+		 *
+		 * @param codePoint
+		 *            the code point
+		 */
+		Literal(final int codePoint) {
+			this.codePoint = codePoint;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.automata.RegexAutomaton.Node#compile(com.platzhaltr
+		 * .readr.automata.RegexAutomaton.Builder, int)
+		 */
+		@Override
+		public int compile(final Builder builder, final int next) {
+			final int state = builder.newState(CONSUME, codePoint);
+			builder.outs.set(state, new int[] { next });
+			return state;
+		}
+
+	}
+
+	/**
+	 * A single code point matched by a {@link Pattern}.
+	 */
+	private static class Atom implements Node {
+
+		/** The regular expression. */
+		private final String regex;
+
+		/**
+		 * Instantiates a new atom.
+		 *
+		 * @param regex
+		 *            the regex
+		 */
+		Atom(final String regex) {
+			this.regex = regex;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.automata.RegexAutomaton.Node#compile(com.platzhaltr
+		 * .readr.automata.RegexAutomaton.Builder, int)
+		 */
+		@Override
+		public int compile(final Builder builder, final int next) {
+			final int state = builder.newState(CONSUME,
+					-1 - builder.atom(regex));
+			builder.outs.set(state, new int[] { next });
+			return state;
+		}
+
+	}
+
+	/**
+	 * A sequence of nodes.
+	 */
+	private static class Sequence implements Node {
+
+		/** The nodes. */
+		private final List<Node> nodes;
+
+		/**
+		 * Instantiates a new sequence.
+		 *
+		 * @param nodes
+		 *            the nodes
+		 */
+		Sequence(final List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.automata.RegexAutomaton.Node#compile(com.platzhaltr
+		 * .readr.automata.RegexAutomaton.Builder, int)
+		 */
+		@Override
+		public int compile(final Builder builder, final int next) {
+			int state = next;
+			for (int i = nodes.size() - 1; i >= 0; i--) {
+				state = nodes.get(i).compile(builder, state);
+			}
+			return state;
+		}
+
+	}
+
+	/**
+	 * Alternative nodes.
+	 */
+	private static class Alternation implements Node {
+
+		/** The alternatives. */
+		private final List<Node> alternatives;
+
+		/**
+		 * Instantiates a new alternation.
+		 *
+		 * @param alternatives
+		 *            the alternatives
+		 */
+		Alternation(final List<Node> alternatives) {
+			this.alternatives = alternatives;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.automata.RegexAutomaton.Node#compile(com.platzhaltr
+		 * .readr.automata.RegexAutomaton.Builder, int)
+		 */
+		@Override
+		public int compile(final Builder builder, final int next) {
+			final int[] targets = new int[alternatives.size()];
+			for (int i = 0; i < targets.length; i++) {
+				targets[i] = alternatives.get(i).compile(builder, next);
+			}
+			return builder.split(targets);
+		}
+
+	}
+
+	/**
+	 * A repeated node.
+	 */
+	private static class Repetition implements Node {
+
+		/** The node. */
+		private final Node node;
+
+		/** The minimum number of repetitions. */
+		private final int min;
+
+		/** The maximum number of repetitions, or -1 if unbounded. */
+		private final int max;
+
+		/**
+		 * Instantiates a new repetition.
+		 *
+		 * @param node
+		 *            the node
+		 * @param min
+		 *            the min
+		 * @param max
+		 *            the max
+		 */
+		Repetition(final Node node, final int min, final int max) {
+			this.node = node;
+			this.min = min;
+			this.max = max;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.automata.RegexAutomaton.Node#compile(com.platzhaltr
+		 * .readr.automata.RegexAutomaton.Builder, int)
+		 */
+		@Override
+		public int compile(final Builder builder, final int next) {
+			int state;
+			if (max < 0) {
+				// a loop, either another repetition or done
+				state = builder.split();
+				builder.outs.set(state,
+						new int[] { node.compile(builder, state), next });
+			} else {
+				// optional repetitions, each one may be the last
+				state = next;
+				for (int i = min; i < max; i++) {
+					state = builder.split(node.compile(builder, state), next);
+				}
+			}
+			for (int i = 0; i < min; i++) {
+				state = node.compile(builder, state);
+			}
+			return state;
+		}
+
+	}
+
+}
@@ -48,4 +48,14 @@ public class AddPrefixFunction implements Function<String, String> {
 		return prefix.concat(line);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AddPrefixFunction [prefix=" + prefix + "]";
+	}
+
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import com.google.common.base.Function;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * The Class ByteLineFunction. Applies a {@link Utf8Function} to UTF-8 encoded
+ * lines.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ByteLineFunction implements Function<ByteLine, ByteLine> {
+
+	/** The inner function. */
+	private final Utf8Function innerFunction;
+
+	/**
+	 * Instantiates a new byte line function.
+	 *
+	 * @param innerFunction
+	 *            the inner function
+	 */
+	public ByteLineFunction(final Utf8Function innerFunction) {
+		super();
+		this.innerFunction = innerFunction;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public ByteLine apply(final ByteLine line) {
+		return innerFunction.applyUtf8(line);
+	}
+}
@@ -21,7 +21,10 @@ import java.util.List;
 import com.google.common.base.Function;
 
 /**
- * The Class ChainFunction.
+ * The Class ChainFunction. Applies the functions in order, passing each result
+ * on to the next function. A function returning <code>null</code> ends the
+ * chain, so <code>null</code> is returned without consulting the remaining
+ * functions.
  *
  * @param <T>
  *            the generic type
@@ -61,6 +64,9 @@ public class ChainFunction<T> implements Function<T, T> {
 	public T apply(final T input) {
 		T o = input;
 		for (final Function<T, T> function : functions) {
+			if (o == null) {
+				return null;
+			}
 			o = function.apply(o);
 		}
 		return o;
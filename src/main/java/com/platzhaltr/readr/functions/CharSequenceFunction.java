@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import com.google.common.base.Function;
+
+/**
+ * The Class CharSequenceFunction. Applies a function on strings to any
+ * {@link CharSequence}, creating the {@link String} only when the function is
+ * applied.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class CharSequenceFunction implements
+		Function<CharSequence, CharSequence> {
+
+	/** The inner function. */
+	private final Function<String, String> innerFunction;
+
+	/**
+	 * Instantiates a new char sequence function.
+	 *
+	 * @param innerFunction
+	 *            the inner function
+	 */
+	public CharSequenceFunction(final Function<String, String> innerFunction) {
+		super();
+		this.innerFunction = innerFunction;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public CharSequence apply(final CharSequence line) {
+		return innerFunction.apply(line.toString());
+	}
+}
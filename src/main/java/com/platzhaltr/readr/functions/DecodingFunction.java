@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Function;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * The Class DecodingFunction. Applies a function on char sequences to encoded
+ * lines by decoding them, by default from UTF-8. The result is only encoded
+ * again if the function changed the line.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class DecodingFunction implements Function<ByteLine, ByteLine> {
+
+	/** The inner function. */
+	private final Function<CharSequence, CharSequence> innerFunction;
+
+	/** The charset, <code>null</code> for UTF-8. */
+	private final Charset charset;
+
+	/**
+	 * Instantiates a new decoding function for UTF-8 encoded lines.
+	 *
+	 * @param innerFunction
+	 *            the inner function
+	 */
+	public DecodingFunction(
+			final Function<CharSequence, CharSequence> innerFunction) {
+		this(innerFunction, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Instantiates a new decoding function for lines encoded in the given
+	 * charset.
+	 *
+	 * @param innerFunction
+	 *            the inner function
+	 * @param charset
+	 *            the charset
+	 */
+	public DecodingFunction(
+			final Function<CharSequence, CharSequence> innerFunction,
+			final Charset charset) {
+		super();
+		this.innerFunction = innerFunction;
+		this.charset = charset.equals(StandardCharsets.UTF_8) ? null
+				: charset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public ByteLine apply(final ByteLine line) {
+		final String decoded = charset == null ? line.toString() : new String(
+				line.array(), line.offset(), line.length(), charset);
+		final CharSequence result = innerFunction.apply(decoded);
+		if (result == null) {
+			return null;
+		}
+
+		if (result != decoded) {
+			if (charset == null) {
+				line.set(result.toString());
+			} else {
+				final byte[] encoded = result.toString().getBytes(charset);
+				line.set(encoded, 0, encoded.length);
+			}
+		}
+		return line;
+	}
+}
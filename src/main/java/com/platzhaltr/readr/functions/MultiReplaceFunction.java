@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.base.Function;
+import com.platzhaltr.readr.automata.AhoCorasick;
+
+/**
+ * The Class MultiReplaceFunction. Replaces several literal strings in one scan
+ * of the line, using an {@link AhoCorasick} automaton over the old strings.
+ *
+ * Occurrences are replaced leftmost-longest: the scan picks the occurrence of
+ * any old string that starts first, preferring the longest old string if
+ * several start at the same index, replaces it and continues after it.
+ * Replacements are never scanned again. Empty old strings are ignored.
+ *
+ * A line without any occurrence is returned as is, without allocating.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class MultiReplaceFunction implements Function<String, String> {
+
+	/** The old strings. */
+	private final String[] oldStrings;
+
+	/** The new strings, by index of the old strings. */
+	private final String[] newStrings;
+
+	/** The automaton. */
+	private final AhoCorasick automaton;
+
+	/**
+	 * Instantiates a new multi replace function.
+	 *
+	 * @param replacements
+	 *            the new strings by old string
+	 */
+	public MultiReplaceFunction(final Map<String, String> replacements) {
+		oldStrings = replacements.keySet().toArray(
+				new String[replacements.size()]);
+		newStrings = replacements.values().toArray(
+				new String[replacements.size()]);
+		automaton = AhoCorasick.forStrings(replacements.keySet());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public String apply(final String input) {
+		final int[] keyword = new int[1];
+		int start = automaton.indexOf(input, 0, keyword);
+		if (start < 0) {
+			return input;
+		}
+
+		final StringBuilder builder = new StringBuilder(input.length() + 16);
+		int last = 0;
+		while (start >= 0) {
+			builder.append(input, last, start).append(newStrings[keyword[0]]);
+			last = start + oldStrings[keyword[0]].length();
+			start = automaton.indexOf(input, last, keyword);
+		}
+		builder.append(input, last, input.length());
+		return builder.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MultiReplaceFunction [oldStrings="
+				+ Arrays.toString(oldStrings) + ", newStrings="
+				+ Arrays.toString(newStrings) + "]";
+	}
+
+}
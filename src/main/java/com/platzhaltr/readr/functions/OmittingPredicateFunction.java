@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+
+/**
+ * The Class OmittingPredicateFunction. Returns <code>null</code> for lines to
+ * which the predicate applies and the unchanged line otherwise.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class OmittingPredicateFunction implements
+		Function<CharSequence, CharSequence> {
+
+	/** The predicate. */
+	private final Predicate<? super CharSequence> predicate;
+
+	/**
+	 * Instantiates a new omitting predicate function.
+	 *
+	 * @param predicate
+	 *            the predicate
+	 */
+	public OmittingPredicateFunction(
+			final Predicate<? super CharSequence> predicate) {
+		super();
+		this.predicate = predicate;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public CharSequence apply(final CharSequence line) {
+		if (predicate.apply(line)) {
+			return null;
+		}
+
+		return line;
+	}
+}
@@ -15,21 +15,39 @@
  */
 package com.platzhaltr.readr.functions;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.platzhaltr.readr.automata.PrefixTrie;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
- * The Class RemovePrefixFunction.
+ * The Class RemovePrefixFunction. Removes the longest of the prefixes a line
+ * starts with. All prefixes are compiled into a {@link PrefixTrie}, so a line
+ * is checked against all of them in one walk.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class RemovePrefixFunction implements Function<String, String> {
+public class RemovePrefixFunction implements Function<String, String>,
+		Utf8Function {
 
 	/** The prefixes. */
 	private final Set<String> prefixes;
 
+	/** The trie. */
+	private final PrefixTrie trie;
+
+	/**
+	 * The trie over the UTF-8 encoded prefixes, or <code>null</code> if a
+	 * prefix has no exact UTF-8 encoding.
+	 */
+	private final PrefixTrie utf8Trie;
+
 	/**
 	 * Instantiates a new prefix remover line transformer.
 	 *
@@ -57,7 +75,40 @@ public class RemovePrefixFunction implements Function<String, String> {
 	 *            the prefixes
 	 */
 	public RemovePrefixFunction(final Set<String> prefixes) {
-		this.prefixes = prefixes;
+		this.prefixes = ImmutableSet.copyOf(prefixes);
+		trie = PrefixTrie.forStrings(prefixes);
+		final List<byte[]> utf8Prefixes = encodeUtf8(prefixes);
+		utf8Trie = utf8Prefixes == null ? null : PrefixTrie
+				.forBytes(utf8Prefixes);
+	}
+
+	/**
+	 * Encodes the prefixes as UTF-8.
+	 *
+	 * @param prefixes
+	 *            the prefixes
+	 * @return the encoded prefixes, or <code>null</code> if a prefix contains
+	 *         unpaired surrogates
+	 */
+	private static List<byte[]> encodeUtf8(final Set<String> prefixes) {
+		final List<byte[]> encoded = Lists.newArrayList();
+		for (final String prefix : prefixes) {
+			final byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+			if (!prefix.equals(new String(bytes, StandardCharsets.UTF_8))) {
+				return null;
+			}
+			encoded.add(bytes);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Gets the prefixes.
+	 *
+	 * @return the prefixes
+	 */
+	public Set<String> getPrefixes() {
+		return prefixes;
 	}
 
 	/*
@@ -67,12 +118,48 @@ public class RemovePrefixFunction implements Function<String, String> {
 	 */
 	@Override
 	public String apply(final String line) {
-		for (final String prefix : prefixes) {
-			if (line.startsWith(prefix)) {
-				return line.substring(prefix.length());
+		final int match = trie.longestMatch(line);
+		if (match > 0) {
+			return line.substring(match);
+		}
+		return line;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.functions.Utf8Function#applyUtf8(com.platzhaltr.
+	 * readr.io.ByteLine)
+	 */
+	@Override
+	public ByteLine applyUtf8(final ByteLine line) {
+		if (utf8Trie == null) {
+			final String decoded = line.toString();
+			final String result = apply(decoded);
+			if (result != decoded) {
+				line.set(result);
 			}
+			return line;
+		}
+
+		final int match = utf8Trie.longestMatch(line.array(), line.offset(),
+				line.length());
+		if (match > 0) {
+			line.set(line.array(), line.offset() + match, line.length()
+					- match);
 		}
 		return line;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RemovePrefixFunction [prefixes=" + prefixes + "]";
+	}
+
 }
@@ -44,6 +44,24 @@ public class ReplaceFunction implements Function<String, String> {
 		this.newString = newString;
 	}
 
+	/**
+	 * Gets the old string.
+	 *
+	 * @return the old string
+	 */
+	public String getOldString() {
+		return oldString;
+	}
+
+	/**
+	 * Gets the new string.
+	 *
+	 * @return the new string
+	 */
+	public String getNewString() {
+		return newString;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -54,4 +72,15 @@ public class ReplaceFunction implements Function<String, String> {
 		return input.replace(oldString, newString);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ReplaceFunction [oldString=" + oldString + ", newString="
+				+ newString + "]";
+	}
+
 }
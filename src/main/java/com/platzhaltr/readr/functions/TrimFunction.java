@@ -34,4 +34,14 @@ public class TrimFunction implements Function<String, String> {
 		return input.trim();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TrimFunction";
+	}
+
 }
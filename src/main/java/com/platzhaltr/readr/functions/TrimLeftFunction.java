@@ -33,4 +33,15 @@ public class TrimLeftFunction implements Function<String, String> {
 		return CharMatcher.WHITESPACE.and(CharMatcher.isNot(' '))
 				.trimTrailingFrom(input);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TrimLeftFunction";
+	}
+
 }
@@ -35,4 +35,15 @@ public class TrimRightFunction implements Function<String, String> {
 		return CharMatcher.WHITESPACE.and(CharMatcher.isNot(' '))
 				.trimTrailingFrom(input);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TrimRightFunction";
+	}
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.functions;
+
+import java.util.List;
+
+import com.google.common.base.Function;
+import com.platzhaltr.readr.io.ByteLine;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
+
+/**
+ * The Class Utf8OmittingPredicateFunction. Returns <code>null</code> for UTF-8
+ * encoded lines to which any of the predicates applies and the unchanged line
+ * otherwise.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class Utf8OmittingPredicateFunction implements
+		Function<ByteLine, ByteLine> {
+
+	/** The predicates. */
+	private final List<Utf8Predicate> predicates;
+
+	/**
+	 * Instantiates a new UTF-8 omitting predicate function.
+	 *
+	 * @param predicates
+	 *            the predicates
+	 */
+	public Utf8OmittingPredicateFunction(final List<Utf8Predicate> predicates) {
+		super();
+		this.predicates = predicates;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public ByteLine apply(final ByteLine line) {
+		for (final Utf8Predicate predicate : predicates) {
+			if (predicate.applyUtf8(line)) {
+				return null;
+			}
+		}
+
+		return line;
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link InputStream} that reads its source on a background thread into a
+ * bounded set of buffers. The source runs ahead of the reader until all
+ * buffers are filled, and the reader only blocks if it catches up. Buffers are
+ * recycled once read.
+ *
+ * Exceptions of the source are thrown by the reader once it reaches them.
+ * Closing the stream stops the background thread and closes the source.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class BackgroundInputStream extends InputStream {
+
+	/** The Constant DEFAULT_BUFFERS. */
+	public static final int DEFAULT_BUFFERS = 4;
+
+	/** The Constant DEFAULT_BUFFER_SIZE. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The Constant POLL_MILLIS. */
+	private static final long POLL_MILLIS = 100;
+
+	/** The Constant END, marking the end of the source. */
+	private static final Chunk END = new Chunk(null, -1, null);
+
+	/** The shared executor, created when first needed. */
+	private static ExecutorService sharedExecutor;
+
+	/** The buffers free to be filled. */
+	private final BlockingQueue<byte[]> free;
+
+	/** The filled buffers, followed by the end or an exception. */
+	private final BlockingQueue<Chunk> filled;
+
+	/** If <code>true</code>, the stream has been closed. */
+	private volatile boolean closed;
+
+	/** The chunk being read, <code>null</code> if none. */
+	private Chunk current;
+
+	/** The index of the next byte in the current chunk. */
+	private int index;
+
+	/** If <code>true</code>, the end of the source has been reached. */
+	private boolean eof;
+
+	/**
+	 * A filled buffer, the end of the source or an exception.
+	 */
+	private static final class Chunk {
+
+		/** The buffer. */
+		private final byte[] buffer;
+
+		/** The number of bytes in the buffer. */
+		private final int length;
+
+		/** The exception, or <code>null</code>. */
+		private final Throwable error;
+
+		/**
+		 * Instantiates a new chunk.
+		 *
+		 * @param buffer
+		 *            the buffer
+		 * @param length
+		 *            the number of bytes in the buffer
+		 * @param error
+		 *            the exception
+		 */
+		private Chunk(final byte[] buffer, final int length,
+				final Throwable error) {
+			this.buffer = buffer;
+			this.length = length;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Instantiates a new background input stream with
+	 * {@value #DEFAULT_BUFFERS} buffers of {@value #DEFAULT_BUFFER_SIZE} bytes
+	 * on the shared executor.
+	 *
+	 * @param source
+	 *            the source
+	 */
+	public BackgroundInputStream(final InputStream source) {
+		this(source, sharedExecutor(), DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instantiates a new background input stream.
+	 *
+	 * @param source
+	 *            the source
+	 * @param executor
+	 *            the executor running the background thread
+	 * @param buffers
+	 *            the number of buffers
+	 * @param bufferSize
+	 *            the size of a buffer
+	 */
+	public BackgroundInputStream(final InputStream source,
+			final Executor executor, final int buffers, final int bufferSize) {
+		if (buffers <= 0) {
+			throw new IllegalArgumentException("Buffers <= 0");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size <= 0");
+		}
+		free = new ArrayBlockingQueue<byte[]>(buffers);
+		for (int i = 0; i < buffers; i++) {
+			free.add(new byte[bufferSize]);
+		}
+		filled = new ArrayBlockingQueue<Chunk>(buffers + 2);
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				produce(source);
+			}
+
+		});
+	}
+
+	/**
+	 * Gets the shared executor, a pool of daemon threads growing and
+	 * shrinking with demand.
+	 *
+	 * @return the executor
+	 */
+	public static synchronized Executor sharedExecutor() {
+		if (sharedExecutor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			sharedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable,
+							"readr-background-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+
+			});
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Fills the buffers from the source until its end, an exception or until
+	 * the stream is closed.
+	 *
+	 * @param source
+	 *            the source
+	 */
+	private void produce(final InputStream source) {
+		try {
+			try {
+				while (!closed) {
+					final byte[] buffer = free.poll(POLL_MILLIS,
+							TimeUnit.MILLISECONDS);
+					if (buffer == null) {
+						continue;
+					}
+
+					int length = 0;
+					int read = 0;
+					while (length < buffer.length
+							&& (read = source.read(buffer, length,
+									buffer.length - length)) != -1) {
+						length += read;
+					}
+					if (length > 0) {
+						filled.add(new Chunk(buffer, length, null));
+					}
+					if (read == -1) {
+						filled.add(END);
+						return;
+					}
+				}
+			} finally {
+				source.close();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			filled.add(new Chunk(null, -1, e));
+		} catch (final Throwable e) {
+			filled.add(new Chunk(null, -1, e));
+		}
+	}
+
+	/**
+	 * Makes sure there is a chunk with unread bytes, waiting for it if
+	 * needed.
+	 *
+	 * @return true, if there is a chunk, false at the end of the source
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean nextChunk() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (current != null && index < current.length) {
+			return true;
+		}
+		if (eof) {
+			return false;
+		}
+
+		if (current != null) {
+			free.add(current.buffer);
+			current = null;
+		}
+
+		final Chunk chunk;
+		try {
+			chunk = filled.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		if (chunk == END) {
+			eof = true;
+			return false;
+		}
+		if (chunk.error != null) {
+			eof = true;
+			if (chunk.error instanceof IOException) {
+				throw (IOException) chunk.error;
+			}
+			throw new IOException(chunk.error);
+		}
+		current = chunk;
+		index = 0;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!nextChunk()) {
+			return -1;
+		}
+		return current.buffer[index++] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextChunk()) {
+			return -1;
+		}
+
+		final int num = Math.min(len, current.length - index);
+		System.arraycopy(current.buffer, index, b, off, num);
+		index += num;
+		return num;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		return current == null ? 0 : current.length - index;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+	}
+
+}
@@ -35,7 +35,7 @@ public abstract class BaseFilterReader extends FilterReader {
 	 * The current line. If null and emitNewline is false, a newline must be
 	 * fetched.
 	 */
-	protected String currentLine;
+	protected CharSequence currentLine;
 
 	/**
 	 * The index of the first unread character in curLine. If at any time
@@ -63,65 +63,118 @@ public abstract class BaseFilterReader extends FilterReader {
 	 */
 	@Override
 	public int read() throws IOException {
-		final char[] chars = new char[1];
-		final int read = read(chars, 0, 1);
-		if (read == -1) {
-			return -1;
+		// Fetch new line if necessary
+		if (currentLine == null && !emitNewline) {
+			setNextMatchingLine();
+			if (currentLine == null) {
+				return -1;
+			}
+		}
 
+		// Return the next character of the current line
+		if (currentLine != null) {
+			if (currentLineIndex < currentLine.length()) {
+				final char c = currentLine.charAt(currentLineIndex++);
+				if (currentLineIndex == currentLine.length()) {
+					currentLine = null;
+				}
+				return c;
+			}
+			currentLine = null;
 		}
-		return chars[0];
+
+		// Emit just the newline
+		emitNewline = false;
+		return '\n';
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Reads characters into a portion of an array. Copies as many lines as fit
+	 * into the array, but only fetches another line without blocking, i.e. if
+	 * the reader is {@link #ready()}.
 	 *
 	 * @see java.io.FilterReader#read(char[], int, int)
 	 */
 	@Override
-	public int read(final char cbuf[], int off, final int len)
+	public int read(final char cbuf[], final int off, final int len)
 			throws IOException {
 
-		// Fetch new line if necessary
-		if (currentLine == null && !emitNewline) {
-			setNextMatchingLine();
+		// Client did not ask for any characters
+		if (len == 0) {
+			return 0;
 		}
 
-		// Return characters from current line
-		if (currentLine != null) {
-			int num = Math.min(
-					len,
-					Math.min(cbuf.length - off, currentLine.length()
-							- currentLineIndex));
-			// Copy characters from curLine to cbuf
-			for (int i = 0; i < num; i++) {
-				cbuf[off++] = currentLine.charAt(currentLineIndex++);
-			}
+		final int end = off + Math.min(len, cbuf.length - off);
+		int position = off;
+		while (position < end) {
 
-			// No more characters in curLine
-			if (currentLineIndex == currentLine.length()) {
-				currentLine = null;
+			// Fetch new line if necessary
+			if (currentLine == null && !emitNewline) {
+				if (position > off && !ready()) {
+					break;
+				}
+				setNextMatchingLine();
+				if (currentLine == null) {
+					break;
+				}
+			}
 
-				// Is there room for the newline?
-				if (num < len && off < cbuf.length) {
-					cbuf[off++] = '\n';
-					emitNewline = false;
-					num++;
+			// Copy characters from currentLine to cbuf
+			if (currentLine != null) {
+				final int num = Math.min(end - position, currentLine.length()
+						- currentLineIndex);
+				getChars(currentLine, currentLineIndex, currentLineIndex
+						+ num, cbuf, position);
+				position += num;
+				currentLineIndex += num;
+
+				// No more characters in currentLine
+				if (currentLineIndex == currentLine.length()) {
+					currentLine = null;
 				}
 			}
 
-			// Return number of character read
-			return num;
-		} else if (emitNewline && len > 0) {
-			// Emit just the newline
-			cbuf[off] = '\n';
-			emitNewline = false;
-			return 1;
-		} else if (len > 0) {
-			// No more characters left in input reader
+			// Is there room for the newline?
+			if (currentLine == null && emitNewline && position < end) {
+				cbuf[position++] = '\n';
+				emitNewline = false;
+			}
+		}
+
+		// No more characters left in input reader
+		if (position == off) {
 			return -1;
+		}
+
+		// Return number of character read
+		return position - off;
+	}
+
+	/**
+	 * Copies characters from the line into the destination array, in bulk
+	 * where the type of the line allows it.
+	 *
+	 * @param line
+	 *            the line
+	 * @param srcBegin
+	 *            the index of the first character to copy
+	 * @param srcEnd
+	 *            the index after the last character to copy
+	 * @param dst
+	 *            the destination array
+	 * @param dstBegin
+	 *            the start offset in the destination array
+	 */
+	static void getChars(final CharSequence line, final int srcBegin,
+			final int srcEnd, final char[] dst, final int dstBegin) {
+		if (line instanceof String) {
+			((String) line).getChars(srcBegin, srcEnd, dst, dstBegin);
+		} else if (line instanceof Line) {
+			((Line) line).getChars(srcBegin, srcEnd, dst, dstBegin);
 		} else {
-			// Client did not ask for any characters
-			return 0;
+			for (int i = srcBegin, j = dstBegin; i < srcEnd; i++, j++) {
+				dst[j] = line.charAt(i);
+			}
 		}
 	}
 
@@ -140,7 +193,13 @@ public abstract class BaseFilterReader extends FilterReader {
 	 */
 	@Override
 	public boolean ready() throws IOException {
-		return currentLine != null || emitNewline || in.ready();
+		if (currentLine != null || emitNewline) {
+			return true;
+		}
+		if (bufferedReader != null) {
+			return bufferedReader.ready();
+		}
+		return in.ready();
 	}
 
 	/*
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link LineReader} on top of another {@link Reader}. Lines are terminated
+ * by <code>\n</code>, <code>\r</code> or <code>\r\n</code>, just like
+ * {@link java.io.BufferedReader#readLine()}, but are returned as views on the
+ * internal buffer. The buffer grows to fit the longest line.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class BufferedLineReader extends LineReader {
+
+	/** The Constant DEFAULT_BUFFER_SIZE. */
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** The reader. */
+	private final Reader in;
+
+	/** The line. */
+	private final Line line = new Line();
+
+	/** The buffer. */
+	private char[] buffer;
+
+	/** The index of the first unread character in buffer. */
+	private int position;
+
+	/** The index after the last valid character in buffer. */
+	private int limit;
+
+	/** If <code>true</code>, the last line was terminated by a <code>\r</code>. */
+	private boolean skipLF;
+
+	/**
+	 * Instantiates a new buffered line reader.
+	 *
+	 * @param in
+	 *            the reader
+	 */
+	public BufferedLineReader(final Reader in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instantiates a new buffered line reader.
+	 *
+	 * @param in
+	 *            the reader
+	 * @param size
+	 *            the initial buffer size
+	 */
+	public BufferedLineReader(final Reader in, final int size) {
+		super(in);
+		if (size <= 0) {
+			throw new IllegalArgumentException("Buffer size <= 0");
+		}
+		this.in = in;
+		buffer = new char[size];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.io.LineReader#readLine()
+	 */
+	@Override
+	public Line readLine() throws IOException {
+		int scan = position;
+		for (;;) {
+			if (scan == limit) {
+				final int scanned = scan - position;
+				if (fill() == -1) {
+					skipLF = false;
+					if (position == limit) {
+						return null;
+					}
+					return emit(limit, limit);
+				}
+				scan = position + scanned;
+				continue;
+			}
+
+			final char c = buffer[scan];
+
+			// the \n of a \r\n terminating the last line
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n') {
+					position++;
+					scan++;
+					continue;
+				}
+			}
+
+			if (c == '\n') {
+				return emit(scan, scan + 1);
+			} else if (c == '\r') {
+				skipLF = true;
+				return emit(scan, scan + 1);
+			}
+			scan++;
+		}
+	}
+
+	/**
+	 * Points the line at the characters from position up to end.
+	 *
+	 * @param end
+	 *            the end of the line
+	 * @param next
+	 *            the start of the next line
+	 * @return the line
+	 */
+	private Line emit(final int end, final int next) {
+		line.set(buffer, position, end - position);
+		position = next;
+		return line;
+	}
+
+	/**
+	 * Moves the unread characters to the start of the buffer, growing it if it
+	 * is full, and reads more characters.
+	 *
+	 * @return the number of characters read, or -1 at the end of the input
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int fill() throws IOException {
+		final int remaining = limit - position;
+		if (remaining == buffer.length) {
+			final char[] grown = new char[buffer.length * 2];
+			System.arraycopy(buffer, position, grown, 0, remaining);
+			buffer = grown;
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+		}
+		position = 0;
+		limit = remaining;
+
+		int read;
+		do {
+			read = in.read(buffer, limit, buffer.length - limit);
+		} while (read == 0);
+
+		if (read > 0) {
+			limit += read;
+		}
+		return read;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#ready()
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		return position < limit || in.ready();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
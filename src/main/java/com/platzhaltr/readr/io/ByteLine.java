@@ -0,0 +1,178 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A UTF-8 encoded line as a view on a window of a shared <code>byte[]</code>.
+ * The window is moved by the {@link ByteLineReader} that owns the line, so its
+ * content is only valid until the next line is read.
+ *
+ * The line is only decoded when {@link #toString()} is called, and the decoded
+ * {@link String} is cached until the window is moved.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ByteLine {
+
+	/** The bytes. */
+	private byte[] bytes;
+
+	/** The offset of the first byte of the line. */
+	private int offset;
+
+	/** The length. */
+	private int length;
+
+	/** The decoded string, if already created. */
+	private String string;
+
+	/**
+	 * Moves the window.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 */
+	public void set(final byte[] bytes, final int offset, final int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+		string = null;
+	}
+
+	/**
+	 * Replaces the line by the UTF-8 encoding of the given string.
+	 *
+	 * @param string
+	 *            the string
+	 */
+	public void set(final String string) {
+		final byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+		set(encoded, 0, encoded.length);
+		this.string = string;
+	}
+
+	/**
+	 * Gets the array backing the line.
+	 *
+	 * @return the bytes
+	 */
+	public byte[] array() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the offset of the first byte of the line in {@link #array()}.
+	 *
+	 * @return the offset
+	 */
+	public int offset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the length in bytes.
+	 *
+	 * @return the length
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Tests if the line starts with the given bytes.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @return true, if successful
+	 */
+	public boolean startsWith(final byte[] prefix) {
+		return regionMatches(0, prefix);
+	}
+
+	/**
+	 * Tests if the line ends with the given bytes.
+	 *
+	 * @param suffix
+	 *            the suffix
+	 * @return true, if successful
+	 */
+	public boolean endsWith(final byte[] suffix) {
+		return regionMatches(length - suffix.length, suffix);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the given bytes.
+	 *
+	 * @param needle
+	 *            the needle
+	 * @return the index, or -1 if the needle does not occur
+	 */
+	public int indexOf(final byte[] needle) {
+		if (needle.length == 0) {
+			return 0;
+		}
+
+		final byte first = needle[0];
+		final int max = offset + length - needle.length;
+		for (int i = offset; i <= max; i++) {
+			if (bytes[i] == first && regionMatches(i - offset, needle)) {
+				return i - offset;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tests if the line contains the other bytes at the given index.
+	 *
+	 * @param index
+	 *            the index
+	 * @param other
+	 *            the other bytes
+	 * @return true, if successful
+	 */
+	public boolean regionMatches(final int index, final byte[] other) {
+		if (index < 0 || index + other.length > length) {
+			return false;
+		}
+		for (int i = 0, j = offset + index; i < other.length; i++, j++) {
+			if (bytes[j] != other[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (string == null) {
+			string = new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+		return string;
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits an {@link InputStream} into lines without decoding it. Lines are
+ * terminated by <code>\n</code>, <code>\r</code> or <code>\r\n</code> and are
+ * returned as {@link ByteLine} views on the internal buffer. The buffer grows
+ * to fit the longest line.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ByteLineReader implements Closeable {
+
+	/** The Constant DEFAULT_BUFFER_SIZE. */
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** The input stream. */
+	private final InputStream in;
+
+	/** The line. */
+	private final ByteLine line = new ByteLine();
+
+	/** The buffer. */
+	private byte[] buffer;
+
+	/** The index of the first unread byte in buffer. */
+	private int position;
+
+	/** The index after the last valid byte in buffer. */
+	private int limit;
+
+	/** The offset in the input of the first byte of the buffer. */
+	private long bufferOffset;
+
+	/** If <code>true</code>, the last line was terminated by a <code>\r</code>. */
+	private boolean skipLF;
+
+	/**
+	 * Instantiates a new byte line reader.
+	 *
+	 * @param in
+	 *            the input stream
+	 */
+	public ByteLineReader(final InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instantiates a new byte line reader.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param size
+	 *            the initial buffer size
+	 */
+	public ByteLineReader(final InputStream in, final int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Buffer size <= 0");
+		}
+		this.in = in;
+		buffer = new byte[size];
+	}
+
+	/**
+	 * Reads the next line. The returned line is only valid until the next call
+	 * to this method.
+	 *
+	 * @return the line without its terminator, or <code>null</code> if the end
+	 *         of the input has been reached
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ByteLine readLine() throws IOException {
+		int scan = position;
+		for (;;) {
+			if (scan == limit) {
+				final int scanned = scan - position;
+				if (fill() == -1) {
+					skipLF = false;
+					if (position == limit) {
+						return null;
+					}
+					return emit(limit, limit);
+				}
+				scan = position + scanned;
+				continue;
+			}
+
+			final byte b = buffer[scan];
+
+			// the \n of a \r\n terminating the last line
+			if (skipLF) {
+				skipLF = false;
+				if (b == '\n') {
+					position++;
+					scan++;
+					continue;
+				}
+			}
+
+			if (b == '\n') {
+				return emit(scan, scan + 1);
+			} else if (b == '\r') {
+				skipLF = true;
+				return emit(scan, scan + 1);
+			}
+			scan++;
+		}
+	}
+
+	/**
+	 * Gets the offset in the input after the terminator of the last line
+	 * read. If that terminator was a <code>\r</code>, a <code>\n</code>
+	 * at the offset still belongs to it.
+	 *
+	 * @return the offset
+	 */
+	public long getOffset() {
+		return bufferOffset + position;
+	}
+
+	/**
+	 * Points the line at the bytes from position up to end.
+	 *
+	 * @param end
+	 *            the end of the line
+	 * @param next
+	 *            the start of the next line
+	 * @return the line
+	 */
+	private ByteLine emit(final int end, final int next) {
+		line.set(buffer, position, end - position);
+		position = next;
+		return line;
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer, growing it if it is
+	 * full, and reads more bytes.
+	 *
+	 * @return the number of bytes read, or -1 at the end of the input
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int fill() throws IOException {
+		final int remaining = limit - position;
+		if (remaining == buffer.length) {
+			final byte[] grown = new byte[buffer.length * 2];
+			System.arraycopy(buffer, position, grown, 0, remaining);
+			buffer = grown;
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+		}
+		bufferOffset += position;
+		position = 0;
+		limit = remaining;
+
+		int read;
+		do {
+			read = in.read(buffer, limit, buffer.length - limit);
+		} while (read == 0);
+
+		if (read > 0) {
+			limit += read;
+		}
+		return read;
+	}
+
+	/**
+	 * Checks if a line can be read without blocking.
+	 *
+	 * @return true, if ready
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public boolean ready() throws IOException {
+		return position < limit || in.available() > 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
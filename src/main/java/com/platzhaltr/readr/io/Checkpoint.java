@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * A consistent state of a job copying mogrified lines from an input to an
+ * output: all input up to a line boundary has been processed, and its output
+ * ends at the given offset. A job can be resumed from a checkpoint by seeking
+ * to the input offset and truncating the output to the output offset.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public final class Checkpoint {
+
+	/** The Constant START. */
+	public static final Checkpoint START = new Checkpoint(0, 0, 0);
+
+	/** The offset in the input at a line boundary. */
+	private final long inputOffset;
+
+	/** The offset in the output. */
+	private final long outputOffset;
+
+	/** The number of lines written. */
+	private final long lines;
+
+	/**
+	 * Instantiates a new checkpoint.
+	 *
+	 * @param inputOffset
+	 *            the offset in the input at a line boundary
+	 * @param outputOffset
+	 *            the offset in the output
+	 * @param lines
+	 *            the number of lines written
+	 */
+	public Checkpoint(final long inputOffset, final long outputOffset,
+			final long lines) {
+		if (inputOffset < 0 || outputOffset < 0 || lines < 0) {
+			throw new IllegalArgumentException("Negative offset or lines");
+		}
+		this.inputOffset = inputOffset;
+		this.outputOffset = outputOffset;
+		this.lines = lines;
+	}
+
+	/**
+	 * Gets the offset in the input at a line boundary. If the byte before is a
+	 * <code>\r</code>, a <code>\n</code> at the offset still belongs to that
+	 * line.
+	 *
+	 * @return the input offset
+	 */
+	public long getInputOffset() {
+		return inputOffset;
+	}
+
+	/**
+	 * Gets the offset in the output.
+	 *
+	 * @return the output offset
+	 */
+	public long getOutputOffset() {
+		return outputOffset;
+	}
+
+	/**
+	 * Gets the number of lines written.
+	 *
+	 * @return the lines
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+	/**
+	 * Reads a checkpoint written by {@link #write(Path)}.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static Checkpoint read(final Path path) throws IOException {
+		final Properties properties = new Properties();
+		final InputStream in = Files.newInputStream(path);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+
+		try {
+			return new Checkpoint(Long.parseLong(properties
+					.getProperty("input")), Long.parseLong(properties
+					.getProperty("output")), Long.parseLong(properties
+					.getProperty("lines")));
+		} catch (final NumberFormatException e) {
+			throw new IOException("Corrupt checkpoint " + path, e);
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Corrupt checkpoint " + path, e);
+		}
+	}
+
+	/**
+	 * Writes the checkpoint to the file, durably and atomically: it is written
+	 * to a temporary file next to it first, which is forced to the disk and
+	 * then moved into place.
+	 *
+	 * @param path
+	 *            the path
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(final Path path) throws IOException {
+		final Properties properties = new Properties();
+		properties.setProperty("input", Long.toString(inputOffset));
+		properties.setProperty("output", Long.toString(outputOffset));
+		properties.setProperty("lines", Long.toString(lines));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		properties.store(bytes, null);
+
+		final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		final FileChannel channel = FileChannel.open(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (inputOffset ^ (inputOffset >>> 32));
+		result = prime * result + (int) (outputOffset ^ (outputOffset >>> 32));
+		result = prime * result + (int) (lines ^ (lines >>> 32));
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Checkpoint)) {
+			return false;
+		}
+		final Checkpoint other = (Checkpoint) obj;
+		return inputOffset == other.inputOffset
+				&& outputOffset == other.outputOffset && lines == other.lines;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Checkpoint [inputOffset=" + inputOffset + ", outputOffset="
+				+ outputOffset + ", lines=" + lines + "]";
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the checkpoints of a copy by a {@link PipelineSink}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public interface CheckpointListener {
+
+	/**
+	 * Called once the output up to the checkpoint has been written to the
+	 * output stream and flushed. Making it durable, e.g. by forcing the output
+	 * to the disk, and saving the checkpoint is up to the listener.
+	 *
+	 * @param checkpoint
+	 *            the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	void checkpoint(Checkpoint checkpoint) throws IOException;
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The compression formats of the JDK that are recognized by their magic
+ * number. Compressed files are decompressed on background threads, see
+ * {@link BackgroundInputStream}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public enum CompressionFormat {
+
+	/** Gzip, decompressed in parallel if it has several members. */
+	GZIP(new byte[] { 0x1f, (byte) 0x8b }) {
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.io.CompressionFormat#open(java.nio.file.Path)
+		 */
+		@Override
+		public InputStream open(final Path path) throws IOException {
+			return new ParallelGzipInputStream(path);
+		}
+
+	},
+
+	/** Zip, the contents of all entries one after the other. */
+	ZIP(new byte[] { 'P', 'K', 3, 4 }) {
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.platzhaltr.readr.io.CompressionFormat#open(java.nio.file.Path)
+		 */
+		@Override
+		public InputStream open(final Path path) throws IOException {
+			return new BackgroundInputStream(new ZipEntriesInputStream(
+					new ZipInputStream(new BufferedInputStream(
+							Files.newInputStream(path)))));
+		}
+
+	};
+
+	/** The magic number. */
+	private final byte[] magic;
+
+	/**
+	 * Instantiates a new compression format.
+	 *
+	 * @param magic
+	 *            the magic number
+	 */
+	private CompressionFormat(final byte[] magic) {
+		this.magic = magic;
+	}
+
+	/**
+	 * Opens the decompressed contents of the file.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the input stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public abstract InputStream open(Path path) throws IOException;
+
+	/**
+	 * Detects the compression format of the file from its first bytes.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the compression format, or <code>null</code> if the file is not
+	 *         compressed in a known format
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static CompressionFormat detect(final Path path) throws IOException {
+		final byte[] head = new byte[4];
+		int length = 0;
+		final InputStream in = Files.newInputStream(path);
+		try {
+			int read;
+			while (length < head.length
+					&& (read = in.read(head, length, head.length - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+
+		for (final CompressionFormat format : values()) {
+			if (format.matches(head, length)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if the bytes start with the magic number.
+	 *
+	 * @param head
+	 *            the first bytes
+	 * @param length
+	 *            the number of bytes
+	 * @return true, if successful
+	 */
+	private boolean matches(final byte[] head, final int length) {
+		if (length < magic.length) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (head[i] != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The contents of all file entries of a {@link ZipInputStream}, one after
+	 * the other.
+	 */
+	private static final class ZipEntriesInputStream extends
+			FilterInputStream {
+
+		/** If <code>true</code>, an entry is being read. */
+		private boolean inEntry;
+
+		/**
+		 * Instantiates a new zip entries input stream.
+		 *
+		 * @param in
+		 *            the in
+		 */
+		private ZipEntriesInputStream(final ZipInputStream in) {
+			super(in);
+		}
+
+		/**
+		 * Moves on to the next file entry.
+		 *
+		 * @return true, if there is one
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean nextEntry() throws IOException {
+			ZipEntry entry;
+			while ((entry = ((ZipInputStream) in).getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (true) {
+				if (!inEntry) {
+					if (!nextEntry()) {
+						return -1;
+					}
+					inEntry = true;
+				}
+				final int read = in.read(b, off, len);
+				if (read != -1) {
+					return read;
+				}
+				inEntry = false;
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(final long n) throws IOException {
+			if (n <= 0) {
+				return 0;
+			}
+			final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+			final int read = read(buffer, 0, buffer.length);
+			return read == -1 ? 0 : read;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#available()
+		 */
+		@Override
+		public int available() throws IOException {
+			return 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link Reader} decoding an {@link InputStream} like an
+ * {@link java.io.InputStreamReader}, but widening runs of ASCII bytes to chars
+ * directly. Only the bytes from a non-ASCII byte up to the next ASCII byte go
+ * through the {@link CharsetDecoder}, so mostly ASCII input is decoded at the
+ * speed of a copy. Malformed input is replaced, as by an
+ * {@link java.io.InputStreamReader}.
+ *
+ * This requires a charset in which an ASCII byte always stands for itself and
+ * never is part of a longer sequence, see {@link #hasAsciiFastPath(Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class DecodingReader extends Reader {
+
+	/** The Constant BUFFER_SIZE. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The input stream. */
+	private final InputStream in;
+
+	/** The decoder. */
+	private final CharsetDecoder decoder;
+
+	/** The bytes read but not yet decoded. */
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** The chars decoded but not yet returned. */
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	/** If <code>true</code>, the end of the stream has been reached. */
+	private boolean eof;
+
+	/**
+	 * Instantiates a new decoding reader.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param charset
+	 *            the charset
+	 */
+	public DecodingReader(final InputStream in, final Charset charset) {
+		if (!hasAsciiFastPath(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " has no ASCII fast path");
+		}
+		this.in = in;
+		decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		bytes.flip();
+		chars.flip();
+	}
+
+	/**
+	 * Checks if every ASCII byte decodes to the same char in the charset,
+	 * independent of the bytes around it. This holds for UTF-8 and for
+	 * single-byte charsets that extend ASCII, but not for multi-byte charsets
+	 * like Shift_JIS, which use ASCII bytes within longer sequences.
+	 *
+	 * @param charset
+	 *            the charset
+	 * @return true, if ASCII bytes can be widened to chars without decoding
+	 */
+	public static boolean hasAsciiFastPath(final Charset charset) {
+		if (charset.equals(StandardCharsets.UTF_8)
+				|| charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.ISO_8859_1)) {
+			return true;
+		}
+		if (!charset.canEncode()
+				|| charset.newEncoder().maxBytesPerChar() != 1) {
+			return false;
+		}
+
+		final byte[] ascii = new byte[128];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (byte) i;
+		}
+		final String decoded = new String(ascii, charset);
+		if (decoded.length() != ascii.length) {
+			return false;
+		}
+		for (int i = 0; i < ascii.length; i++) {
+			if (decoded.charAt(i) != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Widens the leading ASCII bytes to chars, stopping at the first
+	 * non-ASCII byte.
+	 *
+	 * @param src
+	 *            the bytes
+	 * @param srcOff
+	 *            the index of the first byte
+	 * @param dst
+	 *            the chars
+	 * @param dstOff
+	 *            the index of the first char
+	 * @param length
+	 *            the maximum number of bytes to widen
+	 * @return the number of bytes widened
+	 */
+	static int widenAscii(final byte[] src, final int srcOff,
+			final char[] dst, final int dstOff, final int length) {
+		int i = 0;
+		while (i < length) {
+			final byte b = src[srcOff + i];
+			if (b < 0) {
+				break;
+			}
+			dst[dstOff + i] = (char) b;
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads more bytes, keeping the ones not yet decoded.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void fill() throws IOException {
+		bytes.compact();
+		try {
+			final int read = in.read(bytes.array(), bytes.position(),
+					bytes.remaining());
+			if (read < 0) {
+				eof = true;
+			} else {
+				bytes.position(bytes.position() + read);
+			}
+		} finally {
+			bytes.flip();
+		}
+	}
+
+	/**
+	 * Decodes the bytes from the current non-ASCII byte up to and including
+	 * the next ASCII byte, so that the decoder sees every sequence complete,
+	 * or, if the bytes end before, up to the end of the bytes.
+	 *
+	 * @throws CharacterCodingException
+	 *             the character coding exception
+	 */
+	private void decode() throws CharacterCodingException {
+		final byte[] array = bytes.array();
+		final int limit = bytes.limit();
+		int end = bytes.position();
+		while (end < limit && array[end] < 0) {
+			end++;
+		}
+		if (end < limit) {
+			end++;
+		}
+
+		chars.clear();
+		bytes.limit(end);
+		CoderResult result = decoder.decode(bytes, chars, eof && end == limit);
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (eof && !bytes.hasRemaining() && end == limit) {
+			result = decoder.flush(chars);
+			if (result.isError()) {
+				result.throwException();
+			}
+		}
+		bytes.limit(limit);
+		chars.flip();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > cbuf.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		while (true) {
+			// chars left from the decoder
+			if (chars.hasRemaining()) {
+				final int num = Math.min(len, chars.remaining());
+				chars.get(cbuf, off, num);
+				return num;
+			}
+
+			if (!bytes.hasRemaining()) {
+				if (eof) {
+					return -1;
+				}
+				fill();
+				continue;
+			}
+
+			// a run of ASCII bytes
+			final int position = bytes.position();
+			final int num = widenAscii(bytes.array(), position, cbuf, off,
+					Math.min(len, bytes.remaining()));
+			if (num > 0) {
+				bytes.position(position + num);
+				return num;
+			}
+
+			// an incomplete sequence at the end of the bytes
+			final int remaining = bytes.remaining();
+			decode();
+			if (!chars.hasRemaining() && bytes.remaining() == remaining) {
+				if (eof) {
+					return -1;
+				}
+				fill();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#ready()
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		return chars.hasRemaining() || bytes.hasRemaining()
+				|| in.available() > 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
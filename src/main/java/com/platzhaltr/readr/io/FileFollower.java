@@ -0,0 +1,370 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+
+/**
+ * Follows a growing file like <code>tail -f</code>: every line appended to
+ * the file is run through a pipeline, and the lines that survive are pushed
+ * to a {@link LineListener}. Only the appended bytes are read.
+ *
+ * The follower waits for changes of the directory of the file through a
+ * {@link WatchService}, checking the file at least every
+ * {@value #CHECK_MILLIS} ms in case a change is not reported, e.g. on network
+ * volumes. A line is only pushed once its terminator has been written. If the
+ * file is truncated, it is followed again from the start. If the file is
+ * replaced, e.g. when a log is rotated, the rest of the old file is read,
+ * including a last line without a terminator, and the new file is followed
+ * from its start.
+ *
+ * Lines are split on the raw bytes, which requires an ASCII compatible
+ * charset, see {@link MappedLineReader#isAsciiCompatible(Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class FileFollower implements Runnable, Closeable {
+
+	/** The Constant CHECK_MILLIS. */
+	private static final long CHECK_MILLIS = 1000;
+
+	/** The Constant BUFFER_SIZE. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The path. */
+	private final Path path;
+
+	/** The charset. */
+	private final Charset charset;
+
+	/** The pipeline. */
+	private final Function<CharSequence, CharSequence> pipeline;
+
+	/** The listener. */
+	private final LineListener listener;
+
+	/** The offset of the first line to push. */
+	private final long start;
+
+	/** The buffer holding the start of a line not yet terminated. */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** The bytes of the line not yet terminated that did not fit the buffer. */
+	private byte[] overflow = new byte[0];
+
+	/** If <code>true</code>, the follower has been closed. */
+	private volatile boolean closed;
+
+	/** The watch service, <code>null</code> if not running. */
+	private volatile WatchService watchService;
+
+	/** The channel of the file followed. */
+	private FileChannel channel;
+
+	/** The key identifying the file followed, <code>null</code> if unknown. */
+	private Object fileKey;
+
+	/** The offset of the next byte to read. */
+	private long position;
+
+	/**
+	 * Instantiates a new file follower.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param pipeline
+	 *            the pipeline
+	 * @param listener
+	 *            the listener
+	 * @param start
+	 *            the offset of the first line to push, e.g. 0 to push the
+	 *            lines already in the file or its size to push only the ones
+	 *            appended
+	 */
+	public FileFollower(final Path path, final Charset charset,
+			final Function<CharSequence, CharSequence> pipeline,
+			final LineListener listener, final long start) {
+		if (!MappedLineReader.isAsciiCompatible(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " is not ASCII compatible");
+		}
+		this.path = path.toAbsolutePath();
+		this.charset = charset;
+		this.pipeline = pipeline;
+		this.listener = listener;
+		this.start = start;
+	}
+
+	/**
+	 * Follows the file until the follower is closed or following fails,
+	 * which is reported to the listener.
+	 */
+	@Override
+	public void run() {
+		try {
+			follow();
+		} catch (final ClosedWatchServiceException e) {
+			return;
+		} catch (final IOException e) {
+			if (!closed) {
+				listener.failed(e);
+			}
+		} finally {
+			try {
+				if (channel != null) {
+					channel.close();
+				}
+			} catch (final IOException e) {
+				// nothing more to read anyway
+			}
+		}
+	}
+
+	/**
+	 * Follows the file until the follower is closed.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void follow() throws IOException {
+		final WatchService watcher = path.getFileSystem().newWatchService();
+		watchService = watcher;
+		try {
+			if (closed) {
+				return;
+			}
+			path.getParent().register(watcher,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+
+			open();
+			position = start;
+
+			while (!closed) {
+				drain();
+				if (isReplaced()) {
+					drain();
+					flush();
+					channel.close();
+					open();
+					continue;
+				}
+				await(watcher);
+			}
+		} finally {
+			watcher.close();
+		}
+	}
+
+	/**
+	 * Opens the file at its start.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		fileKey = Files.readAttributes(path, BasicFileAttributes.class)
+				.fileKey();
+		position = 0;
+		buffer.clear();
+		overflow = new byte[0];
+	}
+
+	/**
+	 * Checks if another file has taken the place of the one followed.
+	 *
+	 * @return true, if successful
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean isReplaced() throws IOException {
+		if (fileKey == null) {
+			return false;
+		}
+		try {
+			return !fileKey.equals(Files.readAttributes(path,
+					BasicFileAttributes.class).fileKey());
+		} catch (final NoSuchFileException e) {
+			// not yet replaced, keep following the old file
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for a change in the directory of the file, at most
+	 * {@value #CHECK_MILLIS} ms.
+	 *
+	 * @param watcher
+	 *            the watcher
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void await(final WatchService watcher) throws IOException {
+		try {
+			final WatchKey key = watcher.poll(CHECK_MILLIS,
+					TimeUnit.MILLISECONDS);
+			if (key != null) {
+				key.pollEvents();
+				key.reset();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			closed = true;
+		}
+	}
+
+	/**
+	 * Reads the bytes appended to the file and pushes every line terminated.
+	 * Starts again from the start of the file if it has been truncated.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void drain() throws IOException {
+		if (channel.size() < position) {
+			position = 0;
+			buffer.clear();
+			overflow = new byte[0];
+		}
+
+		int read;
+		while (!closed && (read = channel.read(buffer, position)) > 0) {
+			position += read;
+			split();
+		}
+	}
+
+	/**
+	 * Pushes every line terminated in the buffer and keeps the rest. A
+	 * <code>\r</code> at the end of the buffer is kept, as a <code>\n</code>
+	 * may follow.
+	 */
+	private void split() {
+		final byte[] bytes = buffer.array();
+		final int length = buffer.position();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			final byte b = bytes[i];
+			if (b == '\n') {
+				push(bytes, start, i);
+				start = i + 1;
+			} else if (b == '\r') {
+				if (i + 1 == length) {
+					break;
+				}
+				push(bytes, start, i);
+				if (bytes[i + 1] == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+
+		if (start == 0 && length == bytes.length) {
+			// a long line, keep its start aside but a final \r in the buffer
+			final int kept = bytes[length - 1] == '\r' ? 1 : 0;
+			final byte[] grown = new byte[overflow.length + length - kept];
+			System.arraycopy(overflow, 0, grown, 0, overflow.length);
+			System.arraycopy(bytes, 0, grown, overflow.length, length - kept);
+			overflow = grown;
+			start = length - kept;
+		}
+		System.arraycopy(bytes, start, bytes, 0, length - start);
+		buffer.position(length - start);
+	}
+
+	/**
+	 * Pushes the last line of a file that is no longer followed, even without
+	 * a terminator.
+	 */
+	private void flush() {
+		if (buffer.position() > 0 || overflow.length > 0) {
+			final byte[] bytes = buffer.array();
+			int end = buffer.position();
+			if (end > 0 && bytes[end - 1] == '\r') {
+				end--;
+			}
+			push(bytes, 0, end);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Runs a line through the pipeline and pushes it to the listener if it
+	 * survives. The bytes kept aside of a long line are prepended.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param start
+	 *            the start of the line
+	 * @param end
+	 *            the end of the line
+	 */
+	private void push(final byte[] bytes, final int start, final int end) {
+		final String line;
+		if (overflow.length > 0) {
+			final byte[] joined = new byte[overflow.length + end - start];
+			System.arraycopy(overflow, 0, joined, 0, overflow.length);
+			System.arraycopy(bytes, start, joined, overflow.length, end
+					- start);
+			overflow = new byte[0];
+			line = new String(joined, charset);
+		} else {
+			line = new String(bytes, start, end - start, charset);
+		}
+
+		final CharSequence result = pipeline.apply(line);
+		if (result != null) {
+			listener.line(result.toString());
+		}
+	}
+
+	/**
+	 * Stops following the file. Lines being pushed are still pushed.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		final WatchService watcher = watchService;
+		if (watcher != null) {
+			watcher.close();
+		}
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.common.base.Function;
+
+/**
+ * A {@link Spliterator} over the lines of a byte range of a file, after
+ * applying a pipeline. Splitting halves the range at a line boundary, so
+ * parallel streams process separate parts of the file at once. The channel is
+ * shared by all parts and read with positional reads only; closing it is up
+ * to the caller.
+ *
+ * Splitting on the raw bytes requires an ASCII compatible charset, see
+ * {@link MappedLineReader#isAsciiCompatible(Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class FileLineSpliterator implements Spliterator<String> {
+
+	/** The Constant MIN_SPLIT_SIZE. */
+	private static final long MIN_SPLIT_SIZE = 1024 * 1024;
+
+	/** The channel. */
+	private final FileChannel channel;
+
+	/** The charset. */
+	private final Charset charset;
+
+	/** The pipeline. */
+	private final Function<CharSequence, CharSequence> pipeline;
+
+	/** The offset of the first byte of the range. */
+	private long start;
+
+	/** The offset after the last byte of the range. */
+	private final long end;
+
+	/** The line reader, <code>null</code> until the range is read. */
+	private LineReader lineReader;
+
+	/**
+	 * Instantiates a new file line spliterator over the whole file.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param charset
+	 *            the charset
+	 * @param pipeline
+	 *            the pipeline
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public FileLineSpliterator(final FileChannel channel,
+			final Charset charset,
+			final Function<CharSequence, CharSequence> pipeline)
+			throws IOException {
+		this(channel, charset, pipeline, 0, channel.size());
+	}
+
+	/**
+	 * Instantiates a new file line spliterator.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param charset
+	 *            the charset
+	 * @param pipeline
+	 *            the pipeline
+	 * @param start
+	 *            the offset of the first byte of the range
+	 * @param end
+	 *            the offset after the last byte of the range
+	 */
+	private FileLineSpliterator(final FileChannel channel,
+			final Charset charset,
+			final Function<CharSequence, CharSequence> pipeline,
+			final long start, final long end) {
+		if (!MappedLineReader.isAsciiCompatible(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " is not ASCII compatible");
+		}
+		this.channel = channel;
+		this.charset = charset;
+		this.pipeline = pipeline;
+		this.start = start;
+		this.end = end;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+	 */
+	@Override
+	public boolean tryAdvance(final Consumer<? super String> action) {
+		try {
+			if (lineReader == null) {
+				lineReader = new BufferedLineReader(new InputStreamReader(
+						new RangeInputStream(), charset.newDecoder()
+								.onMalformedInput(CodingErrorAction.REPLACE)
+								.onUnmappableCharacter(
+										CodingErrorAction.REPLACE)));
+			}
+
+			Line line;
+			while ((line = lineReader.readLine()) != null) {
+				final CharSequence result = pipeline.apply(line);
+				if (result != null) {
+					action.accept(result.toString());
+					return true;
+				}
+			}
+			return false;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Spliterator#trySplit()
+	 */
+	@Override
+	public Spliterator<String> trySplit() {
+		if (lineReader != null || end - start < 2 * MIN_SPLIT_SIZE) {
+			return null;
+		}
+
+		try {
+			final long middle = LineBoundaries.findLineEnd(channel, start
+					+ (end - start) / 2, end);
+			if (middle >= end) {
+				return null;
+			}
+			final Spliterator<String> prefix = new FileLineSpliterator(
+					channel, charset, pipeline, start, middle);
+			start = middle;
+			return prefix;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Estimates the size, in bytes of the range rather than in lines.
+	 *
+	 * @see java.util.Spliterator#estimateSize()
+	 */
+	@Override
+	public long estimateSize() {
+		return end - start;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Spliterator#characteristics()
+	 */
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Reads the bytes of the range with positional reads.
+	 */
+	private class RangeInputStream extends InputStream {
+
+		/** The offset of the next byte. */
+		private long position = start;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (position >= end) {
+				return -1;
+			}
+			final int num = (int) Math.min(len, end - position);
+			final int read = channel.read(ByteBuffer.wrap(b, off, num),
+					position);
+			if (read > 0) {
+				position += read;
+			}
+			return read;
+		}
+
+	}
+
+}
@@ -69,15 +69,17 @@ public class FunctionFilterReader extends BaseFilterReader {
 	 */
 	@Override
 	protected void setNextMatchingLine() throws IOException {
-		currentLine = bufferedReader.readLine();
-		while (currentLine != null) {
-			if ((currentLine = lineTransformer.apply(currentLine)) != null) {
+		String line = bufferedReader.readLine();
+		while (line != null) {
+			if ((line = lineTransformer.apply(line)) != null) {
+				currentLine = line;
 				emitNewline = true;
 				currentLineIndex = 0;
 				return;
 			}
-			currentLine = bufferedReader.readLine();
+			line = bufferedReader.readLine();
 		}
+		currentLine = null;
 	}
 
 }
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses the gzip members of a file from a given offset, reading the
+ * file with positional reads so that several segments can share a channel.
+ * Decompression stops after the first member that ends at or after the stop
+ * offset, at the end of the file or at bytes after a member that are no gzip
+ * header, which like {@link java.util.zip.GZIPInputStream} are ignored.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class GzipSegmentInputStream extends InputStream {
+
+	/** The Constant BUFFER_SIZE. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The Constant FEXTRA. */
+	private static final int FEXTRA = 4;
+
+	/** The Constant FNAME. */
+	private static final int FNAME = 8;
+
+	/** The Constant FCOMMENT. */
+	private static final int FCOMMENT = 16;
+
+	/** The Constant FHCRC. */
+	private static final int FHCRC = 2;
+
+	/** The channel. */
+	private final FileChannel channel;
+
+	/** The offset after which to stop at the end of a member. */
+	private volatile long stop;
+
+	/** The inflater. */
+	private final Inflater inflater = new Inflater(true);
+
+	/** The checksum of the current member. */
+	private final CRC32 crc = new CRC32();
+
+	/** The buffer of compressed bytes. */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/** The offset in the file of the first byte of the buffer. */
+	private long bufferStart;
+
+	/** The index of the next unread byte in the buffer. */
+	private int bufferIndex;
+
+	/** The number of bytes in the buffer. */
+	private int bufferLimit;
+
+	/** The number of bytes of the current member. */
+	private long memberSize;
+
+	/** If <code>true</code>, a member is being inflated. */
+	private boolean inMember;
+
+	/** If <code>true</code>, no more bytes are returned. */
+	private boolean ended;
+
+	/** If <code>true</code>, there are no members after the end. */
+	private boolean last;
+
+	/**
+	 * Instantiates a new gzip segment input stream.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param start
+	 *            the offset of the first member
+	 * @param stop
+	 *            the offset after which to stop at the end of a member
+	 */
+	GzipSegmentInputStream(final FileChannel channel, final long start,
+			final long stop) {
+		this.channel = channel;
+		this.stop = stop;
+		bufferStart = start;
+	}
+
+	/**
+	 * Sets the offset after which to stop at the end of a member. Members
+	 * already read are not affected.
+	 *
+	 * @param stop
+	 *            the offset
+	 */
+	void setStop(final long stop) {
+		this.stop = stop;
+	}
+
+	/**
+	 * Gets the offset after the last member read. Only valid once the end of
+	 * the stream has been reached.
+	 *
+	 * @return the offset
+	 */
+	long getEnd() {
+		return bufferStart + bufferIndex;
+	}
+
+	/**
+	 * Checks if there are no more members after the end of the stream. Only
+	 * valid once the end of the stream has been reached.
+	 *
+	 * @return true, if this is the last segment of the file
+	 */
+	boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * Reads more compressed bytes, keeping the unread ones.
+	 *
+	 * @return true, if there are more bytes, false at the end of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean fill() throws IOException {
+		bufferStart += bufferIndex;
+		System.arraycopy(buffer, bufferIndex, buffer, 0, bufferLimit
+				- bufferIndex);
+		bufferLimit -= bufferIndex;
+		bufferIndex = 0;
+
+		final int read = channel.read(ByteBuffer.wrap(buffer, bufferLimit,
+				buffer.length - bufferLimit), bufferStart + bufferLimit);
+		if (read <= 0) {
+			return false;
+		}
+		bufferLimit += read;
+		return true;
+	}
+
+	/**
+	 * Reads an unsigned byte.
+	 *
+	 * @return the byte
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int readUByte() throws IOException {
+		if (bufferIndex == bufferLimit && !fill()) {
+			throw new EOFException();
+		}
+		return buffer[bufferIndex++] & 0xff;
+	}
+
+	/**
+	 * Reads an unsigned little-endian short.
+	 *
+	 * @return the short
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int readUShort() throws IOException {
+		return readUByte() | readUByte() << 8;
+	}
+
+	/**
+	 * Reads an unsigned little-endian int.
+	 *
+	 * @return the int
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long readUInt() throws IOException {
+		return readUShort() | (long) readUShort() << 16;
+	}
+
+	/**
+	 * Reads the header of the next member.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readHeader() throws IOException {
+		if (readUShort() != 0x8b1f || readUByte() != 8) {
+			throw new ZipException("Not in GZIP format");
+		}
+		final int flags = readUByte();
+		// mtime, extra flags and operating system
+		for (int i = 0; i < 6; i++) {
+			readUByte();
+		}
+		if ((flags & FEXTRA) != 0) {
+			for (int length = readUShort(); length > 0; length--) {
+				readUByte();
+			}
+		}
+		if ((flags & FNAME) != 0) {
+			while (readUByte() != 0) {
+				continue;
+			}
+		}
+		if ((flags & FCOMMENT) != 0) {
+			while (readUByte() != 0) {
+				continue;
+			}
+		}
+		if ((flags & FHCRC) != 0) {
+			readUShort();
+		}
+
+		inflater.reset();
+		crc.reset();
+		memberSize = 0;
+		inMember = true;
+	}
+
+	/**
+	 * Reads the trailer of the current member and decides whether to go on.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readTrailer() throws IOException {
+		// the bytes given to the inflater but not used by it
+		bufferIndex -= inflater.getRemaining();
+		if (readUInt() != crc.getValue()
+				|| readUInt() != (memberSize & 0xffffffffL)) {
+			throw new ZipException("Corrupt GZIP trailer");
+		}
+		inMember = false;
+
+		if (getEnd() >= stop) {
+			ended = true;
+			return;
+		}
+
+		// like GZIPInputStream, ignore anything that is no other member
+		if (bufferIndex == bufferLimit && !fill()) {
+			ended = true;
+			last = true;
+			return;
+		}
+		final int index = bufferIndex;
+		final long start = bufferStart;
+		try {
+			readHeader();
+		} catch (final IOException e) {
+			bufferStart = start;
+			bufferIndex = index;
+			ended = true;
+			last = true;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		final byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		while (!ended) {
+			if (!inMember) {
+				readHeader();
+			}
+
+			try {
+				final int num = inflater.inflate(b, off, len);
+				if (num > 0) {
+					crc.update(b, off, num);
+					memberSize += num;
+					return num;
+				}
+			} catch (final DataFormatException e) {
+				throw new ZipException(e.getMessage());
+			}
+
+			if (inflater.finished()) {
+				readTrailer();
+			} else if (inflater.needsDictionary()) {
+				throw new ZipException("Unexpected preset dictionary");
+			} else if (inflater.needsInput()) {
+				if (bufferIndex == bufferLimit && !fill()) {
+					throw new EOFException(
+							"Unexpected end of ZLIB input stream");
+				}
+				inflater.setInput(buffer, bufferIndex, bufferLimit
+						- bufferIndex);
+				bufferIndex = bufferLimit;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+	}
+
+}
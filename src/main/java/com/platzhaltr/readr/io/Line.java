@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+/**
+ * A line as a {@link CharSequence} view on a window of a shared
+ * <code>char[]</code>. The window is moved by the {@link LineReader} that owns
+ * the line, so its content is only valid until the next line is read.
+ *
+ * A {@link String} is only created when {@link #toString()} is called and is
+ * cached until the window is moved.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class Line implements CharSequence {
+
+	/** The chars. */
+	private char[] chars;
+
+	/** The offset of the first char of the line. */
+	private int offset;
+
+	/** The length. */
+	private int length;
+
+	/** The string, if already created. */
+	private String string;
+
+	/**
+	 * Moves the window.
+	 *
+	 * @param chars
+	 *            the chars
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 */
+	public void set(final char[] chars, final int offset, final int length) {
+		this.chars = chars;
+		this.offset = offset;
+		this.length = length;
+		string = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.CharSequence#length()
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	@Override
+	public char charAt(final int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return chars[offset + index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException(start + ", " + end);
+		}
+		return new String(chars, offset + start, end - start);
+	}
+
+	/**
+	 * Copies characters from this line into the destination array, like
+	 * {@link String#getChars(int, int, char[], int)}.
+	 *
+	 * @param srcBegin
+	 *            the index of the first character to copy
+	 * @param srcEnd
+	 *            the index after the last character to copy
+	 * @param dst
+	 *            the destination array
+	 * @param dstBegin
+	 *            the start offset in the destination array
+	 */
+	public void getChars(final int srcBegin, final int srcEnd,
+			final char[] dst, final int dstBegin) {
+		if (srcBegin < 0 || srcEnd > length || srcBegin > srcEnd) {
+			throw new IndexOutOfBoundsException(srcBegin + ", " + srcEnd);
+		}
+		System.arraycopy(chars, offset + srcBegin, dst, dstBegin, srcEnd
+				- srcBegin);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (string == null) {
+			string = new String(chars, offset, length);
+		}
+		return string;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Static helpers for splitting files at line boundaries on the raw bytes,
+ * which requires an ASCII compatible charset, see
+ * {@link MappedLineReader#isAsciiCompatible(java.nio.charset.Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+final class LineBoundaries {
+
+	/**
+	 * Instantiates a new line boundaries.
+	 */
+	private LineBoundaries() {
+	}
+
+	/**
+	 * Finds the end of the line containing the given offset. A
+	 * <code>\r\n</code> is kept together.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param offset
+	 *            the offset
+	 * @param size
+	 *            the size of the file
+	 * @return the offset after the line terminator, or the size of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	static long findLineEnd(final FileChannel channel, final long offset,
+			final long size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long scan = offset;
+		while (scan < size) {
+			buffer.clear();
+			final int read = channel.read(buffer, scan);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				final byte b = buffer.get(i);
+				if (b == '\n') {
+					return scan + i + 1;
+				}
+				if (b == '\r') {
+					if (i + 1 < read) {
+						return scan + i + (buffer.get(i + 1) == '\n' ? 2 : 1);
+					}
+					return skipLF(channel, scan + i + 1, size);
+				}
+			}
+			scan += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Skips a <code>\n</code> following a <code>\r</code>.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param offset
+	 *            the offset after the <code>\r</code>
+	 * @param size
+	 *            the size of the file
+	 * @return the end of the line
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static long skipLF(final FileChannel channel, final long offset,
+			final long size) throws IOException {
+		if (offset >= size) {
+			return size;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(1);
+		channel.read(buffer, offset);
+		return buffer.get(0) == '\n' ? offset + 1 : offset;
+	}
+
+}
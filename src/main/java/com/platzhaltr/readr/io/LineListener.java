@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the lines pushed by a {@link FileFollower}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public interface LineListener {
+
+	/**
+	 * Called for every line that survived the mogrifiers.
+	 *
+	 * @param line
+	 *            the line, without its terminator
+	 */
+	void line(String line);
+
+	/**
+	 * Called once if following the file failed. No more lines follow.
+	 *
+	 * @param e
+	 *            the exception
+	 */
+	void failed(IOException e);
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link Reader} that hands out its input line by line as {@link Line}
+ * views, without creating a {@link String} per line.
+ *
+ * When read as a plain {@link Reader}, line terminators are converted to a
+ * <code>\n</code>. Reading characters and reading lines must not be mixed.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public abstract class LineReader extends Reader {
+
+	/** The line currently read as characters. */
+	private Line currentLine;
+
+	/** The index of the first unread character in currentLine. */
+	private int currentLineIndex;
+
+	/**
+	 * If <code>true</code>, the newline at the end of currentLine has not been
+	 * returned.
+	 */
+	private boolean emitNewline;
+
+	/**
+	 * Instantiates a new line reader.
+	 */
+	protected LineReader() {
+		super();
+	}
+
+	/**
+	 * Instantiates a new line reader.
+	 *
+	 * @param lock
+	 *            the object to synchronize on
+	 */
+	protected LineReader(final Object lock) {
+		super(lock);
+	}
+
+	/**
+	 * Reads the next line. The returned line is only valid until the next call
+	 * to this method.
+	 *
+	 * @return the line without its terminator, or <code>null</code> if the end
+	 *         of the input has been reached
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public abstract Line readLine() throws IOException;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+			throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		// Fetch new line if necessary
+		if (currentLine == null && !emitNewline) {
+			currentLine = readLine();
+			if (currentLine == null) {
+				return -1;
+			}
+			currentLineIndex = 0;
+			emitNewline = true;
+		}
+
+		int num = 0;
+		if (currentLine != null) {
+			num = Math.min(len, currentLine.length() - currentLineIndex);
+			currentLine.getChars(currentLineIndex, currentLineIndex + num,
+					cbuf, off);
+			currentLineIndex += num;
+			if (currentLineIndex == currentLine.length()) {
+				currentLine = null;
+			}
+		}
+
+		// Is there room for the newline?
+		if (currentLine == null && num < len) {
+			cbuf[off + num++] = '\n';
+			emitNewline = false;
+		}
+
+		return num;
+	}
+
+}
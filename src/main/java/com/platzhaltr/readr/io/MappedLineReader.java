@@ -0,0 +1,314 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link LineReader} on a memory-mapped file. Line boundaries are found by
+ * scanning the mapped bytes, and each line is decoded straight from the
+ * mapping into the line buffer.
+ *
+ * The file is mapped in windows, so files larger than 2 GB are supported. A
+ * window is remapped at the start of the line that crosses its end and grows
+ * if a single line does not fit.
+ *
+ * Scanning bytes for line terminators requires a charset that encodes
+ * <code>\r</code> and <code>\n</code> as single ASCII bytes, see
+ * {@link #isAsciiCompatible(Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class MappedLineReader extends LineReader {
+
+	/** The Constant DEFAULT_WINDOW_SIZE. */
+	private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/** The channel. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long size;
+
+	/** The decoder. */
+	private final CharsetDecoder decoder;
+
+	/** If <code>true</code>, ASCII bytes are widened without the decoder. */
+	private final boolean asciiFastPath;
+
+	/** The line. */
+	private final Line line = new Line();
+
+	/** The maximum number of bytes mapped at once. */
+	private int windowSize;
+
+	/** The window, <code>null</code> if nothing has been mapped yet. */
+	private MappedByteBuffer window;
+
+	/** The offset in the file of the first byte of window. */
+	private long windowStart;
+
+	/** The number of bytes in window. */
+	private int windowLimit;
+
+	/** The offset in the file of the first unread byte. */
+	private long position;
+
+	/** The line buffer. */
+	private char[] chars = new char[256];
+
+	/** If <code>true</code>, the last line was terminated by a <code>\r</code>. */
+	private boolean skipLF;
+
+	/**
+	 * Instantiates a new mapped line reader.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public MappedLineReader(final Path path, final Charset charset)
+			throws IOException {
+		this(path, charset, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Instantiates a new mapped line reader.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param windowSize
+	 *            the number of bytes to map at once
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public MappedLineReader(final Path path, final Charset charset,
+			final int windowSize) throws IOException {
+		if (!isAsciiCompatible(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " is not ASCII compatible");
+		}
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("Window size <= 0");
+		}
+		this.windowSize = windowSize;
+		decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		asciiFastPath = DecodingReader.hasAsciiFastPath(charset);
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	/**
+	 * Checks if the charset encodes <code>\r</code> and <code>\n</code> as
+	 * single ASCII bytes, so that lines can be split before decoding.
+	 *
+	 * @param charset
+	 *            the charset
+	 * @return true, if is ASCII compatible
+	 */
+	public static boolean isAsciiCompatible(final Charset charset) {
+		return charset.canEncode()
+				&& Arrays.equals(new byte[] { '\r', '\n' },
+						"\r\n".getBytes(charset));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.io.LineReader#readLine()
+	 */
+	@Override
+	public Line readLine() throws IOException {
+		// the \n of a \r\n terminating the last line
+		if (skipLF) {
+			skipLF = false;
+			if (position < size) {
+				if (window == null || position >= windowStart + windowLimit) {
+					map(position);
+				}
+				if (window.get((int) (position - windowStart)) == '\n') {
+					position++;
+				}
+			}
+		}
+
+		if (position == size) {
+			return null;
+		}
+		if (window == null || position >= windowStart + windowLimit) {
+			map(position);
+		}
+
+		int start = (int) (position - windowStart);
+		int index = start;
+		for (;;) {
+			if (index == windowLimit) {
+				// last line without a terminator
+				if (windowStart + index == size) {
+					return emit(start, index, index);
+				}
+
+				// the line crosses the end of the window
+				final int scanned = index - start;
+				if (start == 0) {
+					growWindow();
+				}
+				map(windowStart + start);
+				start = 0;
+				index = scanned;
+				continue;
+			}
+
+			final byte b = window.get(index);
+			if (b == '\n') {
+				return emit(start, index, index + 1);
+			} else if (b == '\r') {
+				skipLF = true;
+				return emit(start, index, index + 1);
+			}
+			index++;
+		}
+	}
+
+	/**
+	 * Maps the next window, starting at the given offset.
+	 *
+	 * @param offset
+	 *            the offset in the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void map(final long offset) throws IOException {
+		windowStart = offset;
+		windowLimit = (int) Math.min(windowSize, size - offset);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+				windowLimit);
+	}
+
+	/**
+	 * Doubles the window size for a line that does not fit into one window.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void growWindow() throws IOException {
+		if (windowSize == Integer.MAX_VALUE) {
+			throw new IOException("Line at offset " + windowStart
+					+ " exceeds " + Integer.MAX_VALUE + " bytes");
+		}
+		windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+	}
+
+	/**
+	 * Decodes the bytes from start up to end of the window into the line. If
+	 * the charset allows, the leading ASCII bytes are widened to chars
+	 * directly and only the rest of the line goes through the decoder.
+	 *
+	 * @param start
+	 *            the index of the first byte of the line in window
+	 * @param end
+	 *            the index after the last byte of the line in window
+	 * @param next
+	 *            the index of the first byte of the next line in window
+	 * @return the line
+	 * @throws CharacterCodingException
+	 *             the character coding exception
+	 */
+	private Line emit(final int start, final int end, final int next)
+			throws CharacterCodingException {
+		final int length = end - start;
+		final int capacity = (int) Math.ceil(length
+				* (double) decoder.maxCharsPerByte());
+		if (chars.length < capacity) {
+			chars = new char[Math.max(capacity, chars.length * 2)];
+		}
+
+		int ascii = 0;
+		if (asciiFastPath) {
+			while (ascii < length) {
+				final byte b = window.get(start + ascii);
+				if (b < 0) {
+					break;
+				}
+				chars[ascii++] = (char) b;
+			}
+			if (ascii == length) {
+				line.set(chars, 0, length);
+				position = windowStart + next;
+				return line;
+			}
+		}
+
+		window.limit(end);
+		window.position(start + ascii);
+		final CharBuffer out = CharBuffer.wrap(chars, ascii, chars.length
+				- ascii);
+		decoder.reset();
+		CoderResult result = decoder.decode(window, out, true);
+		if (!result.isUnderflow()) {
+			result.throwException();
+		}
+		result = decoder.flush(out);
+		if (!result.isUnderflow()) {
+			result.throwException();
+		}
+		window.limit(windowLimit);
+
+		line.set(chars, 0, out.position());
+		position = windowStart + next;
+		return line;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#ready()
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		return position < size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+/**
+ * An {@link InputStream} decompressing a gzip file that consists of several
+ * members, as written by <code>pigz</code>, <code>bgzip</code> or by
+ * concatenating gzip files, on several threads. The file is split into
+ * segments at bytes that look like the header of a member, and each segment
+ * is decompressed on its own background thread, see
+ * {@link BackgroundInputStream}. A segment only counts if the previous one
+ * ended exactly at its start; one that started at a header-like byte inside
+ * a member is discarded, and decompression goes on from where the previous
+ * segment really ended. A file of a single member is thus decompressed on one
+ * background thread.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+	/** The Constant DEFAULT_SEGMENT_SIZE. */
+	public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	/** The Constant SCAN_BUFFER_SIZE. */
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+	/** The channel. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long size;
+
+	/** The executor running the segments. */
+	private final Executor executor;
+
+	/** The maximum number of segments in progress. */
+	private final int parallelism;
+
+	/** The approximate number of compressed bytes per segment. */
+	private final int segmentSize;
+
+	/** The segments started after the current one, in file order. */
+	private final Deque<Segment> pending = new LinkedList<Segment>();
+
+	/** The segment being read, <code>null</code> at the end. */
+	private Segment current;
+
+	/** The offset from which to look for the start of the next segment. */
+	private long scanPosition;
+
+	/**
+	 * A segment being decompressed in the background.
+	 */
+	private static final class Segment {
+
+		/** The offset of the first member. */
+		private final long start;
+
+		/** The members. */
+		private final GzipSegmentInputStream members;
+
+		/** The decompressed bytes. */
+		private final InputStream in;
+
+		/**
+		 * Instantiates a new segment.
+		 *
+		 * @param start
+		 *            the offset of the first member
+		 * @param members
+		 *            the members
+		 * @param in
+		 *            the decompressed bytes
+		 */
+		private Segment(final long start,
+				final GzipSegmentInputStream members, final InputStream in) {
+			this.start = start;
+			this.members = members;
+			this.in = in;
+		}
+	}
+
+	/**
+	 * Instantiates a new parallel gzip input stream on the shared executor of
+	 * {@link BackgroundInputStream}, with as many segments in progress as
+	 * there are processors.
+	 *
+	 * @param path
+	 *            the path
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ParallelGzipInputStream(final Path path) throws IOException {
+		this(path, BackgroundInputStream.sharedExecutor(), Runtime
+				.getRuntime().availableProcessors(), DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Instantiates a new parallel gzip input stream.
+	 *
+	 * @param path
+	 *            the path
+	 * @param executor
+	 *            the executor running the segments
+	 * @param parallelism
+	 *            the maximum number of segments in progress
+	 * @param segmentSize
+	 *            the approximate number of compressed bytes per segment
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ParallelGzipInputStream(final Path path, final Executor executor,
+			final int parallelism, final int segmentSize) throws IOException {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism <= 0");
+		}
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("Segment size <= 0");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.segmentSize = segmentSize;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+
+		current = start(0);
+		scanPosition = segmentSize;
+		startSegments();
+	}
+
+	/**
+	 * Starts decompressing a segment, until the first member that ends after
+	 * the start of the next segment, once that is known.
+	 *
+	 * @param start
+	 *            the offset of the first member
+	 * @return the segment
+	 */
+	private Segment start(final long start) {
+		final GzipSegmentInputStream members = new GzipSegmentInputStream(
+				channel, start, Long.MAX_VALUE);
+		return new Segment(start, members, new BackgroundInputStream(members,
+				executor, BackgroundInputStream.DEFAULT_BUFFERS,
+				BackgroundInputStream.DEFAULT_BUFFER_SIZE));
+	}
+
+	/**
+	 * Starts segments until the maximum number is in progress. Looks for the
+	 * start of a segment in at most that many windows of the segment size, so
+	 * a large member does not have to be scanned at once.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void startSegments() throws IOException {
+		for (int windows = 0; windows < parallelism
+				&& pending.size() + 1 < parallelism && scanPosition < size; windows++) {
+			final long end = Math.min(scanPosition + segmentSize, size);
+			final long start = findMember(scanPosition, end);
+			if (start < 0) {
+				scanPosition = end;
+				continue;
+			}
+
+			final Segment previous = pending.isEmpty() ? current : pending
+					.getLast();
+			previous.members.setStop(start);
+			pending.add(start(start));
+			scanPosition = start + segmentSize;
+		}
+	}
+
+	/**
+	 * Finds the first bytes that look like the header of a member.
+	 *
+	 * @param from
+	 *            the offset to start from
+	 * @param to
+	 *            the offset at which to stop
+	 * @return the offset, or -1 if there is none
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long findMember(final long from, final long to) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long position = from;
+		while (position < to) {
+			buffer.clear();
+			final int read = channel.read(buffer, position);
+			if (read < 4) {
+				return -1;
+			}
+			final byte[] bytes = buffer.array();
+			final int limit = (int) Math.min(read - 3, to - position);
+			for (int i = 0; i < limit; i++) {
+				if (isHeader(bytes, i)) {
+					return position + i;
+				}
+			}
+			position += limit;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if the bytes look like the header of a member: the magic number,
+	 * the deflate method and no reserved flags.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset
+	 * @return true, if successful
+	 */
+	private static boolean isHeader(final byte[] bytes, final int offset) {
+		return bytes[offset] == (byte) 0x1f
+				&& bytes[offset + 1] == (byte) 0x8b
+				&& bytes[offset + 2] == 8 && (bytes[offset + 3] & 0xe0) == 0;
+	}
+
+	/**
+	 * Checks if the file holds the header of a member at the offset.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return true, if successful
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean isHeader(final long offset) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(4);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				return false;
+			}
+		}
+		return isHeader(buffer.array(), 0);
+	}
+
+	/**
+	 * Moves on to the segment starting where the current one ended.
+	 *
+	 * @return true, if there is one, false at the end of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean nextSegment() throws IOException {
+		final long end = current.members.getEnd();
+		final boolean last = current.members.isLast();
+		current.in.close();
+		current = null;
+
+		// segments that started inside a member
+		while (!pending.isEmpty() && (last || pending.getFirst().start < end)) {
+			pending.remove().in.close();
+		}
+		if (last || end >= size || !isHeader(end)) {
+			return false;
+		}
+
+		if (!pending.isEmpty() && pending.getFirst().start == end) {
+			current = pending.remove();
+		} else {
+			current = start(end);
+			if (pending.isEmpty()) {
+				scanPosition = Math.max(scanPosition, end + segmentSize);
+			} else {
+				current.members.setStop(pending.getFirst().start);
+			}
+		}
+		startSegments();
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		final byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		while (current != null) {
+			final int read = current.in.read(b, off, len);
+			if (read != -1) {
+				return read;
+			}
+			if (!nextSegment()) {
+				break;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (current != null) {
+			current.in.close();
+			current = null;
+		}
+		while (!pending.isEmpty()) {
+			pending.remove().in.close();
+		}
+		channel.close();
+	}
+
+}
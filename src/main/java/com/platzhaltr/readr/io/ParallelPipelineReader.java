@@ -0,0 +1,327 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Function;
+
+/**
+ * A {@link Reader} that applies a pipeline to a file on several threads. The
+ * file is split into chunks at line boundaries, and each chunk is decoded and
+ * run through the pipeline as a task of a {@link ForkJoinPool}. The output of
+ * the chunks is returned in file order or, if unordered, in the order the
+ * chunks complete. Either way the lines of a chunk stay together.
+ *
+ * Only a bounded number of chunks is processed ahead of the reader, twice the
+ * parallelism of the pool. The pipeline must be safe to use from several
+ * threads, which all built-in predicates and functions are.
+ *
+ * Splitting on the raw bytes requires an ASCII compatible charset, see
+ * {@link MappedLineReader#isAsciiCompatible(Charset)}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ParallelPipelineReader extends Reader {
+
+	/** The Constant DEFAULT_CHUNK_SIZE. */
+	private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/** The Constant NO_CHARS. */
+	private static final char[] NO_CHARS = new char[0];
+
+	/** The channel. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long size;
+
+	/** The charset. */
+	private final Charset charset;
+
+	/** The pipeline. */
+	private final Function<CharSequence, CharSequence> pipeline;
+
+	/** The pool running the chunks. */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The completion service running the chunks if unordered,
+	 * <code>null</code> if ordered.
+	 */
+	private final CompletionService<char[]> completionService;
+
+	/** The chunks in progress, in file order. */
+	private final Deque<Future<char[]>> pending = new LinkedList<Future<char[]>>();
+
+	/** The maximum number of chunks in progress. */
+	private final int maxPending;
+
+	/** If <code>true</code>, the chunks are returned in file order. */
+	private final boolean ordered;
+
+	/** The approximate number of bytes per chunk. */
+	private final int chunkSize;
+
+	/** The offset in the file of the next chunk. */
+	private long position;
+
+	/** The output of the current chunk. */
+	private char[] current = NO_CHARS;
+
+	/** The index of the first unread char in current. */
+	private int currentIndex;
+
+	/**
+	 * Instantiates a new parallel pipeline reader.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param pipeline
+	 *            the pipeline
+	 * @param pool
+	 *            the pool
+	 * @param ordered
+	 *            if <code>true</code>, the chunks are returned in file order
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ParallelPipelineReader(final Path path, final Charset charset,
+			final Function<CharSequence, CharSequence> pipeline,
+			final ForkJoinPool pool, final boolean ordered) throws IOException {
+		this(path, charset, pipeline, pool, ordered, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Instantiates a new parallel pipeline reader.
+	 *
+	 * @param path
+	 *            the path
+	 * @param charset
+	 *            the charset
+	 * @param pipeline
+	 *            the pipeline
+	 * @param pool
+	 *            the pool
+	 * @param ordered
+	 *            if <code>true</code>, the chunks are returned in file order
+	 * @param chunkSize
+	 *            the approximate number of bytes per chunk
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ParallelPipelineReader(final Path path, final Charset charset,
+			final Function<CharSequence, CharSequence> pipeline,
+			final ForkJoinPool pool, final boolean ordered,
+			final int chunkSize) throws IOException {
+		if (!MappedLineReader.isAsciiCompatible(charset)) {
+			throw new IllegalArgumentException("Charset " + charset
+					+ " is not ASCII compatible");
+		}
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size <= 0");
+		}
+		this.charset = charset;
+		this.pipeline = pipeline;
+		this.ordered = ordered;
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+		// only unordered reads take the chunks as they complete, an ordered
+		// one would leave every finished chunk in its queue
+		completionService = ordered ? null
+				: new ExecutorCompletionService<char[]>(pool);
+		maxPending = 2 * pool.getParallelism();
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	/**
+	 * Submits chunks until the maximum number of chunks is in progress or the
+	 * whole file has been submitted.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void submitChunks() throws IOException {
+		while (pending.size() < maxPending && position < size) {
+			final long start = position;
+			final long end = LineBoundaries.findLineEnd(channel,
+					Math.min(start + chunkSize, size), size);
+			position = end;
+			final Callable<char[]> chunk = new Callable<char[]>() {
+
+				@Override
+				public char[] call() throws IOException {
+					return process(start, (int) (end - start));
+				}
+
+			};
+			pending.add(ordered ? pool.submit(chunk) : completionService
+					.submit(chunk));
+		}
+	}
+
+	/**
+	 * Decodes a chunk and runs it through the pipeline.
+	 *
+	 * @param start
+	 *            the offset of the chunk
+	 * @param length
+	 *            the length of the chunk
+	 * @return the output
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private char[] process(final long start, final int length)
+			throws IOException {
+		final ByteBuffer bytes = ByteBuffer.allocate(length);
+		while (bytes.hasRemaining()) {
+			if (channel.read(bytes, start + bytes.position()) < 0) {
+				break;
+			}
+		}
+		bytes.flip();
+
+		final CharBuffer chars = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE)
+				.decode(bytes);
+		final Reader reader = new PipelineFilterReader(new CharArrayReader(
+				chars.array(), chars.arrayOffset(), chars.remaining()),
+				pipeline);
+
+		final StringBuilder output = new StringBuilder(chars.remaining());
+		final char[] buffer = new char[8192];
+		int read;
+		while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+			output.append(buffer, 0, read);
+		}
+		reader.close();
+
+		final char[] result = new char[output.length()];
+		output.getChars(0, result.length, result, 0);
+		return result;
+	}
+
+	/**
+	 * Waits for the next chunk.
+	 *
+	 * @return the output of the chunk, or <code>null</code> if there are no
+	 *         more chunks
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private char[] nextChunk() throws IOException {
+		submitChunks();
+		if (pending.isEmpty()) {
+			return null;
+		}
+
+		try {
+			final Future<char[]> future;
+			if (ordered) {
+				future = pending.remove();
+			} else {
+				future = completionService.take();
+				pending.remove(future);
+			}
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(final char[] cbuf, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > cbuf.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		while (currentIndex == current.length) {
+			final char[] next = nextChunk();
+			if (next == null) {
+				return -1;
+			}
+			current = next;
+			currentIndex = 0;
+		}
+
+		final int num = Math.min(len, current.length - currentIndex);
+		System.arraycopy(current, currentIndex, cbuf, off, num);
+		currentIndex += num;
+		return num;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#ready()
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		return currentIndex < current.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		for (final Future<char[]> future : pending) {
+			future.cancel(false);
+		}
+		pending.clear();
+		channel.close();
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.base.Function;
+
+/**
+ * The byte counterpart of {@link PipelineFilterReader}. This class takes a
+ * UTF-8 encoded {@link InputStream} and a pipeline {@link Function} and
+ * applies the pipeline to every line, without decoding lines the pipeline
+ * does not need to decode. Lines for which the pipeline returns
+ * <code>null</code> are omitted. Line terminators are converted to a
+ * <code>\n</code>.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class PipelineFilterInputStream extends InputStream {
+
+	/** The line reader. */
+	private final ByteLineReader lineReader;
+
+	/** The pipeline. */
+	private final Function<ByteLine, ByteLine> pipeline;
+
+	/**
+	 * The current line. If null and emitNewline is false, a newline must be
+	 * fetched.
+	 */
+	private ByteLine currentLine;
+
+	/** The index of the first unread byte in currentLine. */
+	private int currentLineIndex;
+
+	/**
+	 * If <code>true</code>, the newline at the end of currentLine has not been
+	 * returned.
+	 */
+	private boolean emitNewline;
+
+	/**
+	 * Instantiates a new pipeline filter input stream.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param pipeline
+	 *            the pipeline
+	 */
+	public PipelineFilterInputStream(final InputStream in,
+			final Function<ByteLine, ByteLine> pipeline) {
+		lineReader = new ByteLineReader(in);
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Gets the next line.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void setNextMatchingLine() throws IOException {
+		ByteLine line;
+		while ((line = lineReader.readLine()) != null) {
+			final ByteLine result = pipeline.apply(line);
+			if (result != null) {
+				currentLine = result;
+				emitNewline = true;
+				currentLineIndex = 0;
+				return;
+			}
+		}
+		currentLine = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		// Fetch new line if necessary
+		if (currentLine == null && !emitNewline) {
+			setNextMatchingLine();
+			if (currentLine == null) {
+				return -1;
+			}
+		}
+
+		// Return the next byte of the current line
+		if (currentLine != null) {
+			if (currentLineIndex < currentLine.length()) {
+				final int b = currentLine.array()[currentLine.offset()
+						+ currentLineIndex++] & 0xff;
+				if (currentLineIndex == currentLine.length()) {
+					currentLine = null;
+				}
+				return b;
+			}
+			currentLine = null;
+		}
+
+		// Emit just the newline
+		emitNewline = false;
+		return '\n';
+	}
+
+	/**
+	 * Reads bytes into a portion of an array. Copies as many lines as fit into
+	 * the array, but only fetches another line without blocking.
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		// Client did not ask for any bytes
+		if (len == 0) {
+			return 0;
+		}
+
+		final int end = off + len;
+		int position = off;
+		while (position < end) {
+
+			// Fetch new line if necessary
+			if (currentLine == null && !emitNewline) {
+				if (position > off && !lineReader.ready()) {
+					break;
+				}
+				setNextMatchingLine();
+				if (currentLine == null) {
+					break;
+				}
+			}
+
+			// Copy bytes from currentLine to b
+			if (currentLine != null) {
+				final int num = Math.min(end - position, currentLine.length()
+						- currentLineIndex);
+				System.arraycopy(currentLine.array(), currentLine.offset()
+						+ currentLineIndex, b, position, num);
+				position += num;
+				currentLineIndex += num;
+
+				// No more bytes in currentLine
+				if (currentLineIndex == currentLine.length()) {
+					currentLine = null;
+				}
+			}
+
+			// Is there room for the newline?
+			if (currentLine == null && emitNewline && position < end) {
+				b[position++] = '\n';
+				emitNewline = false;
+			}
+		}
+
+		// No more bytes left in input stream
+		if (position == off) {
+			return -1;
+		}
+
+		// Return number of bytes read
+		return position - off;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		int available = emitNewline ? 1 : 0;
+		if (currentLine != null) {
+			available += currentLine.length() - currentLineIndex;
+		}
+		return available;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		lineReader.close();
+	}
+
+}
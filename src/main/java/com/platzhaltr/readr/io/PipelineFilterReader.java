@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.common.base.Function;
+
+/**
+ * This class takes a {@link Reader} and a pipeline {@link Function} and
+ * applies the pipeline to every line. Lines for which the pipeline returns
+ * <code>null</code> are omitted. Line terminators are converted to a
+ * <code>\n</code>.
+ *
+ * Lines are handed to the pipeline as {@link Line} views, so no
+ * {@link String} is created for lines that are omitted before a function
+ * needs one. Lines that pass the pipeline unchanged are copied straight from
+ * the line buffer.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class PipelineFilterReader extends BaseFilterReader {
+
+	/** The line reader. */
+	private final LineReader lineReader;
+
+	/** The pipeline. */
+	private final Function<CharSequence, CharSequence> pipeline;
+
+	/**
+	 * Instantiates a new pipeline filter reader.
+	 *
+	 * @param in
+	 *            the reader
+	 * @param pipeline
+	 *            the pipeline
+	 */
+	public PipelineFilterReader(final Reader in,
+			final Function<CharSequence, CharSequence> pipeline) {
+		super(in);
+		if (in instanceof LineReader) {
+			lineReader = (LineReader) in;
+		} else {
+			lineReader = new BufferedLineReader(in);
+		}
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Gets the next line.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Override
+	protected void setNextMatchingLine() throws IOException {
+		Line line;
+		while ((line = lineReader.readLine()) != null) {
+			final CharSequence result = pipeline.apply(line);
+			if (result != null) {
+				currentLine = result;
+				emitNewline = true;
+				currentLineIndex = 0;
+				return;
+			}
+		}
+		currentLine = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.io.BaseFilterReader#ready()
+	 */
+	@Override
+	public boolean ready() throws IOException {
+		return currentLine != null || emitNewline || lineReader.ready();
+	}
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import com.google.common.base.Function;
+
+/**
+ * Pushes the output of a pipeline straight into a {@link Writer} or
+ * {@link OutputStream}, without the pull-based bookkeeping of a
+ * {@link BaseFilterReader}. Surviving lines are collected in a large buffer,
+ * each followed by a <code>\n</code>, and written in batches.
+ *
+ * UTF-8 encoded lines are copied as bytes; only lines changed by a function
+ * that cannot work on the encoded line are encoded again, see
+ * {@link PipelineFilterInputStream}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public final class PipelineSink {
+
+	/** The Constant BUFFER_SIZE. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Instantiates a new pipeline sink.
+	 */
+	private PipelineSink() {
+	}
+
+	/**
+	 * Applies the pipeline to every line and writes the result to the writer.
+	 * The writer is flushed, but not closed.
+	 *
+	 * @param lineReader
+	 *            the line reader
+	 * @param pipeline
+	 *            the pipeline
+	 * @param writer
+	 *            the writer
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long copy(final LineReader lineReader,
+			final Function<CharSequence, CharSequence> pipeline,
+			final Writer writer) throws IOException {
+		final char[] buffer = new char[BUFFER_SIZE];
+		int position = 0;
+		long lines = 0;
+
+		Line line;
+		while ((line = lineReader.readLine()) != null) {
+			final CharSequence result = pipeline.apply(line);
+			if (result == null) {
+				continue;
+			}
+			lines++;
+
+			final int length = result.length();
+			if (position + length + 1 > buffer.length) {
+				writer.write(buffer, 0, position);
+				position = 0;
+
+				// the line does not fit at all
+				if (length + 1 > buffer.length) {
+					writer.append(result).write('\n');
+					continue;
+				}
+			}
+			BaseFilterReader.getChars(result, 0, length, buffer, position);
+			position += length;
+			buffer[position++] = '\n';
+		}
+
+		writer.write(buffer, 0, position);
+		writer.flush();
+		return lines;
+	}
+
+	/**
+	 * Applies the pipeline to every UTF-8 encoded line and writes the result
+	 * to the output stream. The output stream is flushed, but not closed.
+	 *
+	 * @param lineReader
+	 *            the line reader
+	 * @param pipeline
+	 *            the pipeline
+	 * @param out
+	 *            the output stream
+	 * @return the number of lines written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long copy(final ByteLineReader lineReader,
+			final Function<ByteLine, ByteLine> pipeline, final OutputStream out)
+			throws IOException {
+		return copy(lineReader, pipeline, out, Checkpoint.START,
+				Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Applies the pipeline to every UTF-8 encoded line and writes the result
+	 * to the output stream, like
+	 * {@link #copy(ByteLineReader, Function, OutputStream)}, continuing from
+	 * a checkpoint. Whenever at least the given number of input bytes has
+	 * been read since the last checkpoint, the output so far is written and
+	 * flushed, and the next checkpoint is passed to the listener. A last
+	 * checkpoint follows at the end of the input.
+	 *
+	 * @param lineReader
+	 *            the line reader, positioned at the input offset of the
+	 *            checkpoint
+	 * @param pipeline
+	 *            the pipeline
+	 * @param out
+	 *            the output stream, positioned at the output offset of the
+	 *            checkpoint
+	 * @param start
+	 *            the checkpoint to continue from
+	 * @param interval
+	 *            the number of input bytes between checkpoints
+	 * @param listener
+	 *            the listener, <code>null</code> for none
+	 * @return the number of lines written, including those of the checkpoint
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long copy(final ByteLineReader lineReader,
+			final Function<ByteLine, ByteLine> pipeline,
+			final OutputStream out, final Checkpoint start,
+			final long interval, final CheckpointListener listener)
+			throws IOException {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval <= 0");
+		}
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int position = 0;
+		long lines = start.getLines();
+		long written = start.getOutputOffset();
+		long next = interval;
+
+		ByteLine line;
+		while ((line = lineReader.readLine()) != null) {
+			final ByteLine result = pipeline.apply(line);
+			if (result != null) {
+				lines++;
+
+				final int length = result.length();
+				if (position + length + 1 > buffer.length) {
+					out.write(buffer, 0, position);
+					written += position;
+					position = 0;
+				}
+				if (length + 1 > buffer.length) {
+					// the line does not fit at all
+					out.write(result.array(), result.offset(), length);
+					out.write('\n');
+					written += length + 1;
+				} else {
+					System.arraycopy(result.array(), result.offset(), buffer,
+							position, length);
+					position += length;
+					buffer[position++] = '\n';
+				}
+			}
+
+			if (listener != null && lineReader.getOffset() >= next) {
+				out.write(buffer, 0, position);
+				written += position;
+				position = 0;
+				out.flush();
+				listener.checkpoint(new Checkpoint(start.getInputOffset()
+						+ lineReader.getOffset(), written, lines));
+				next = lineReader.getOffset() + interval;
+			}
+		}
+
+		out.write(buffer, 0, position);
+		written += position;
+		out.flush();
+		if (listener != null) {
+			listener.checkpoint(new Checkpoint(start.getInputOffset()
+					+ lineReader.getOffset(), written, lines));
+		}
+		return lines;
+	}
+
+}
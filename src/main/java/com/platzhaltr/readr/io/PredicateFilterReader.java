@@ -32,7 +32,7 @@ import com.google.common.base.Predicates;
 public class PredicateFilterReader extends BaseFilterReader {
 
 	/** The line predicate. */
-	private final Predicate<String> linePredicate;
+	private final Predicate<? super String> linePredicate;
 
 	/**
 	 * Instantiates a new comment filter reader.
@@ -53,7 +53,7 @@ public class PredicateFilterReader extends BaseFilterReader {
 	 *            the line predicate
 	 */
 	public PredicateFilterReader(final Reader in,
-			final Predicate<String> linePredicate) {
+			final Predicate<? super String> linePredicate) {
 		super(in);
 		if (in instanceof BufferedReader) {
 			bufferedReader = (BufferedReader) in;
@@ -71,15 +71,17 @@ public class PredicateFilterReader extends BaseFilterReader {
 	 */
 	@Override
 	protected void setNextMatchingLine() throws IOException {
-		currentLine = bufferedReader.readLine();
-		while (currentLine != null) {
-			if (linePredicate.apply(currentLine)) {
+		String line = bufferedReader.readLine();
+		while (line != null) {
+			if (linePredicate.apply(line)) {
+				currentLine = line;
 				emitNewline = true;
 				currentLineIndex = 0;
 				return;
 			}
-			currentLine = bufferedReader.readLine();
+			line = bufferedReader.readLine();
 		}
+		currentLine = null;
 	}
 
 }
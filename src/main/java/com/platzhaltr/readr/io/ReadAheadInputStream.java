@@ -0,0 +1,277 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link InputStream} that reads a file ahead through an
+ * {@link AsynchronousFileChannel}. A fixed number of buffers is kept in
+ * flight, each read at its own offset, so several reads wait for the disk at
+ * once while the reader works on the bytes already there. A buffer is read
+ * again as soon as the reader is done with it; the reader only blocks when it
+ * catches up with the reads.
+ *
+ * Only the bytes up to the size of the file when it was opened are read.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	/** The Constant DEFAULT_BUFFERS. */
+	public static final int DEFAULT_BUFFERS = 4;
+
+	/** The Constant DEFAULT_BUFFER_SIZE. */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	/** The channel. */
+	private final AsynchronousFileChannel channel;
+
+	/** The size of the file. */
+	private final long size;
+
+	/** The size of a buffer. */
+	private final int bufferSize;
+
+	/** The reads in flight, in file order. */
+	private final Deque<Read> pending = new LinkedList<Read>();
+
+	/** The offset of the next read. */
+	private long position;
+
+	/** The buffer being read, <code>null</code> if none. */
+	private ByteBuffer current;
+
+	/**
+	 * A read of a buffer at an offset.
+	 */
+	private static final class Read {
+
+		/** The buffer. */
+		private final ByteBuffer buffer;
+
+		/** The offset of the first byte of the buffer. */
+		private final long position;
+
+		/** The result of the read. */
+		private Future<Integer> future;
+
+		/**
+		 * Instantiates a new read.
+		 *
+		 * @param buffer
+		 *            the buffer
+		 * @param position
+		 *            the offset of the first byte of the buffer
+		 */
+		private Read(final ByteBuffer buffer, final long position) {
+			this.buffer = buffer;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Instantiates a new read ahead input stream with
+	 * {@value #DEFAULT_BUFFERS} buffers of {@value #DEFAULT_BUFFER_SIZE}
+	 * bytes.
+	 *
+	 * @param path
+	 *            the path
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ReadAheadInputStream(final Path path) throws IOException {
+		this(path, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instantiates a new read ahead input stream.
+	 *
+	 * @param path
+	 *            the path
+	 * @param buffers
+	 *            the number of buffers in flight
+	 * @param bufferSize
+	 *            the size of a buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ReadAheadInputStream(final Path path, final int buffers,
+			final int bufferSize) throws IOException {
+		if (buffers <= 0) {
+			throw new IllegalArgumentException("Buffers <= 0");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size <= 0");
+		}
+		this.bufferSize = bufferSize;
+		channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+
+		for (int i = 0; i < buffers && position < size; i++) {
+			submit(ByteBuffer.allocateDirect(bufferSize));
+		}
+	}
+
+	/**
+	 * Starts reading the buffer at the next offset, unless the whole file has
+	 * been read.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	private void submit(final ByteBuffer buffer) {
+		if (position >= size) {
+			return;
+		}
+		buffer.clear();
+		buffer.limit((int) Math.min(bufferSize, size - position));
+
+		final Read read = new Read(buffer, position);
+		read.future = channel.read(buffer, position);
+		pending.add(read);
+		position += buffer.limit();
+	}
+
+	/**
+	 * Waits for the read to complete.
+	 *
+	 * @param future
+	 *            the future
+	 * @return the number of bytes read, or -1 at the end of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static int await(final Future<Integer> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Makes sure there is a buffer with unread bytes, waiting for it if
+	 * needed.
+	 *
+	 * @return true, if there is a buffer, false at the end of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private boolean nextBuffer() throws IOException {
+		if (!channel.isOpen()) {
+			throw new IOException("Stream closed");
+		}
+
+		while (current == null || !current.hasRemaining()) {
+			if (current != null) {
+				submit(current);
+				current = null;
+			}
+			if (pending.isEmpty()) {
+				return false;
+			}
+
+			final Read read = pending.remove();
+			// a read may return fewer bytes than asked for
+			while (await(read.future) >= 0 && read.buffer.hasRemaining()) {
+				read.future = channel.read(read.buffer, read.position
+						+ read.buffer.position());
+			}
+			read.buffer.flip();
+			current = read.buffer;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!nextBuffer()) {
+			return -1;
+		}
+		return current.get() & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBuffer()) {
+			return -1;
+		}
+
+		final int num = Math.min(len, current.remaining());
+		current.get(b, off, num);
+		return num;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		if (!channel.isOpen()) {
+			throw new IOException("Stream closed");
+		}
+		return current == null ? 0 : current.remaining();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		pending.clear();
+		current = null;
+		channel.close();
+	}
+
+}
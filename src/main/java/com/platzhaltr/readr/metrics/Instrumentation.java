@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.platzhaltr.readr.functions.Utf8Function;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
+
+/**
+ * Static factories wrapping predicates, functions and pipelines so that they
+ * record into a {@link PipelineStats}. Wrapped predicates and functions keep
+ * their ability to work on UTF-8 encoded lines.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public final class Instrumentation {
+
+	/**
+	 * Instantiates a new instrumentation.
+	 */
+	private Instrumentation() {
+	}
+
+	/**
+	 * Wraps a predicate or a function, recording into the stage at the given
+	 * position of the same name.
+	 *
+	 * @param object
+	 *            a {@link Predicate} on char sequences or a {@link Function}
+	 *            on strings
+	 * @param position
+	 *            the position among the mogrifiers, in the order they are
+	 *            applied
+	 * @param stats
+	 *            the stats
+	 * @return the wrapped predicate or function
+	 */
+	@SuppressWarnings("unchecked")
+	public static Object instrument(final Object object, final int position,
+			final PipelineStats stats) {
+		final StageStats stage = stats.stage(position, object.toString());
+		if (object instanceof Predicate) {
+			if (object instanceof Utf8Predicate) {
+				return new InstrumentedUtf8Predicate((Utf8Predicate) object,
+						stage);
+			}
+			return new InstrumentedPredicate(
+					(Predicate<CharSequence>) object, stage);
+		}
+		if (object instanceof Utf8Function) {
+			return new InstrumentedUtf8Function((Utf8Function) object, stage);
+		}
+		return new InstrumentedFunction((Function<String, String>) object,
+				stage);
+	}
+
+	/**
+	 * Wraps a whole pipeline, recording the lines in and out.
+	 *
+	 * @param <T>
+	 *            the type of the lines
+	 * @param pipeline
+	 *            the pipeline
+	 * @param stats
+	 *            the stats
+	 * @return the wrapped pipeline
+	 */
+	public static <T> Function<T, T> instrumentPipeline(
+			final Function<T, T> pipeline, final PipelineStats stats) {
+		return new InstrumentedPipeline<T>(pipeline, stats);
+	}
+
+}
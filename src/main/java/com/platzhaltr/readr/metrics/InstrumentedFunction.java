@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Function;
+
+/**
+ * A function counting the lines it sees, changes and drops.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class InstrumentedFunction implements Function<String, String> {
+
+	/** The function. */
+	private final Function<String, String> function;
+
+	/** The stats. */
+	final StageStats stats;
+
+	/**
+	 * Instantiates a new instrumented function.
+	 *
+	 * @param function
+	 *            the function
+	 * @param stats
+	 *            the stats
+	 */
+	InstrumentedFunction(final Function<String, String> function,
+			final StageStats stats) {
+		this.function = function;
+		this.stats = stats;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public String apply(final String input) {
+		final long start = System.nanoTime();
+		final String result = function.apply(input);
+		stats.nanos.add(System.nanoTime() - start);
+		stats.linesIn.increment();
+		stats.charsIn.add(input.length());
+		if (result == null) {
+			stats.linesDropped.increment();
+		} else {
+			stats.charsOut.add(result.length());
+			if (!result.equals(input)) {
+				stats.linesChanged.increment();
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return function.toString();
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Function;
+
+/**
+ * A whole pipeline counting the lines it reads and returns.
+ *
+ * @param <T>
+ *            the type of the lines
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class InstrumentedPipeline<T> implements Function<T, T> {
+
+	/** The pipeline. */
+	private final Function<T, T> pipeline;
+
+	/** The stats. */
+	private final PipelineStats stats;
+
+	/**
+	 * Instantiates a new instrumented pipeline.
+	 *
+	 * @param pipeline
+	 *            the pipeline
+	 * @param stats
+	 *            the stats
+	 */
+	InstrumentedPipeline(final Function<T, T> pipeline,
+			final PipelineStats stats) {
+		this.pipeline = pipeline;
+		this.stats = stats;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Function#apply(java.lang.Object)
+	 */
+	@Override
+	public T apply(final T input) {
+		final long start = System.nanoTime();
+		final T result = pipeline.apply(input);
+		stats.nanos.add(System.nanoTime() - start);
+		stats.linesIn.increment();
+		if (result != null) {
+			stats.linesOut.increment();
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return pipeline.toString();
+	}
+
+}
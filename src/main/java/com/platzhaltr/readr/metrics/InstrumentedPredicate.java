@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Predicate;
+
+/**
+ * A predicate counting the lines it sees and drops.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class InstrumentedPredicate implements Predicate<CharSequence> {
+
+	/** The predicate. */
+	private final Predicate<CharSequence> predicate;
+
+	/** The stats. */
+	final StageStats stats;
+
+	/**
+	 * Instantiates a new instrumented predicate.
+	 *
+	 * @param predicate
+	 *            the predicate
+	 * @param stats
+	 *            the stats
+	 */
+	InstrumentedPredicate(final Predicate<CharSequence> predicate,
+			final StageStats stats) {
+		this.predicate = predicate;
+		this.stats = stats;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
+	 */
+	@Override
+	public boolean apply(final CharSequence input) {
+		final long start = System.nanoTime();
+		final boolean result = predicate.apply(input);
+		stats.nanos.add(System.nanoTime() - start);
+		stats.linesIn.increment();
+		stats.charsIn.add(input.length());
+		if (result) {
+			stats.linesDropped.increment();
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return predicate.toString();
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Function;
+import com.platzhaltr.readr.functions.Utf8Function;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * A function on strings and UTF-8 encoded lines counting the lines it sees,
+ * changes and drops. As encoded lines are changed in place, a line counts as
+ * changed if its bounds moved.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class InstrumentedUtf8Function extends InstrumentedFunction implements
+		Utf8Function {
+
+	/** The function. */
+	private final Utf8Function utf8Function;
+
+	/**
+	 * Instantiates a new instrumented utf8 function.
+	 *
+	 * @param function
+	 *            the function
+	 * @param stats
+	 *            the stats
+	 */
+	@SuppressWarnings("unchecked")
+	InstrumentedUtf8Function(final Utf8Function function,
+			final StageStats stats) {
+		super((Function<String, String>) function, stats);
+		this.utf8Function = function;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.functions.Utf8Function#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public ByteLine applyUtf8(final ByteLine line) {
+		final byte[] array = line.array();
+		final int offset = line.offset();
+		final int length = line.length();
+		final long start = System.nanoTime();
+		final ByteLine result = utf8Function.applyUtf8(line);
+		stats.nanos.add(System.nanoTime() - start);
+		stats.linesIn.increment();
+		stats.bytesIn.add(length);
+		if (result == null) {
+			stats.linesDropped.increment();
+		} else {
+			stats.bytesOut.add(result.length());
+			if (result.array() != array || result.offset() != offset
+					|| result.length() != length) {
+				stats.linesChanged.increment();
+			}
+		}
+		return result;
+	}
+
+}
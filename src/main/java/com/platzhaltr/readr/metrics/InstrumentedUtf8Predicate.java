@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
+import com.platzhaltr.readr.predicates.Utf8Predicate;
+
+/**
+ * A predicate on chars and UTF-8 encoded lines counting the lines it sees and
+ * drops.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+class InstrumentedUtf8Predicate extends InstrumentedPredicate implements
+		Utf8Predicate {
+
+	/** The predicate. */
+	private final Utf8Predicate utf8Predicate;
+
+	/**
+	 * Instantiates a new instrumented utf8 predicate.
+	 *
+	 * @param predicate
+	 *            the predicate
+	 * @param stats
+	 *            the stats
+	 */
+	@SuppressWarnings("unchecked")
+	InstrumentedUtf8Predicate(final Utf8Predicate predicate,
+			final StageStats stats) {
+		super((Predicate<CharSequence>) predicate, stats);
+		this.utf8Predicate = predicate;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		final int length = line.length();
+		final long start = System.nanoTime();
+		final boolean result = utf8Predicate.applyUtf8(line);
+		stats.nanos.add(System.nanoTime() - start);
+		stats.linesIn.increment();
+		stats.bytesIn.add(length);
+		if (result) {
+			stats.linesDropped.increment();
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * The counters of a pipeline compiled with metrics, see
+ * {@link com.platzhaltr.readr.MogrifiedReaderMaker#compile(PipelineStats)}.
+ * Holds the lines in and out of the whole pipeline and a {@link StageStats}
+ * per predicate and function.
+ *
+ * Stages are identified by their position and name, so equal mogrifiers
+ * added twice count separately, while the char and the byte pipeline of the
+ * same maker share their counters.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class PipelineStats implements PipelineStatsMXBean {
+
+	/** The lines read. */
+	final LongAdder linesIn = new LongAdder();
+
+	/** The lines returned. */
+	final LongAdder linesOut = new LongAdder();
+
+	/** The time spent. */
+	final LongAdder nanos = new LongAdder();
+
+	/** The stages by position and name. */
+	private final Map<String, StageStats> stages = Maps.newLinkedHashMap();
+
+	/**
+	 * Gets the stage at the given position of the given name, adding it if it
+	 * is new.
+	 *
+	 * @param position
+	 *            the position
+	 * @param name
+	 *            the name
+	 * @return the stage stats
+	 */
+	synchronized StageStats stage(final int position, final String name) {
+		final String key = position + ":" + name;
+		StageStats stage = stages.get(key);
+		if (stage == null) {
+			stage = new StageStats(position, name);
+			stages.put(key, stage);
+		}
+		return stage;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.metrics.PipelineStatsMXBean#getLinesIn()
+	 */
+	@Override
+	public long getLinesIn() {
+		return linesIn.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.metrics.PipelineStatsMXBean#getLinesOut()
+	 */
+	@Override
+	public long getLinesOut() {
+		return linesOut.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.metrics.PipelineStatsMXBean#getNanos()
+	 */
+	@Override
+	public long getNanos() {
+		return nanos.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.metrics.PipelineStatsMXBean#getStages()
+	 */
+	@Override
+	public synchronized ImmutableList<StageStats> getStages() {
+		return ImmutableList.copyOf(stages.values());
+	}
+
+	/**
+	 * Gets the first stage of the given name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the stage stats, or <code>null</code> if there is none
+	 */
+	public synchronized StageStats getStage(final String name) {
+		for (final StageStats stage : stages.values()) {
+			if (stage.getName().equals(name)) {
+				return stage;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.platzhaltr.readr.metrics.PipelineStatsMXBean#reset()
+	 */
+	@Override
+	public synchronized void reset() {
+		linesIn.reset();
+		linesOut.reset();
+		nanos.reset();
+		for (final StageStats stage : stages.values()) {
+			stage.reset();
+		}
+	}
+
+	/**
+	 * Registers the stats with the platform MBean server.
+	 *
+	 * @param name
+	 *            the name
+	 * @throws JMException
+	 *             if the stats cannot be registered
+	 */
+	public void register(final ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+	}
+
+	/**
+	 * Unregisters the stats from the platform MBean server.
+	 *
+	 * @param name
+	 *            the name
+	 * @throws JMException
+	 *             if the stats cannot be unregistered
+	 */
+	public void unregister(final ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PipelineStats [linesIn=" + linesIn + ", linesOut=" + linesOut
+				+ ", nanos=" + nanos + ", stages=" + getStages() + "]";
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import java.util.List;
+
+/**
+ * The management interface of {@link PipelineStats}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public interface PipelineStatsMXBean {
+
+	/**
+	 * Gets the lines read.
+	 *
+	 * @return the lines in
+	 */
+	long getLinesIn();
+
+	/**
+	 * Gets the lines returned.
+	 *
+	 * @return the lines out
+	 */
+	long getLinesOut();
+
+	/**
+	 * Gets the cumulative time spent in the pipeline, in nanoseconds.
+	 *
+	 * @return the nanos
+	 */
+	long getNanos();
+
+	/**
+	 * Gets the counters of the predicates and functions, in the order they
+	 * were compiled.
+	 *
+	 * @return the stages
+	 */
+	List<StageStats> getStages();
+
+	/**
+	 * Resets all counters.
+	 */
+	void reset();
+
+}
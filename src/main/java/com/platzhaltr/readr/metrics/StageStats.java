@@ -0,0 +1,192 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a single predicate or function of a pipeline. Counters are
+ * updated from any number of threads with little contention.
+ *
+ * Predicates count the lines they dropped, functions the lines they changed.
+ * Lines tested on the encoded bytes count bytes, all others chars.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class StageStats {
+
+	/** The position of the stage in the pipeline. */
+	private final int position;
+
+	/** The name. */
+	private final String name;
+
+	/** The lines seen. */
+	final LongAdder linesIn = new LongAdder();
+
+	/** The lines dropped by a predicate. */
+	final LongAdder linesDropped = new LongAdder();
+
+	/** The lines changed by a function. */
+	final LongAdder linesChanged = new LongAdder();
+
+	/** The chars seen. */
+	final LongAdder charsIn = new LongAdder();
+
+	/** The chars returned by a function. */
+	final LongAdder charsOut = new LongAdder();
+
+	/** The bytes seen. */
+	final LongAdder bytesIn = new LongAdder();
+
+	/** The bytes returned by a function. */
+	final LongAdder bytesOut = new LongAdder();
+
+	/** The time spent. */
+	final LongAdder nanos = new LongAdder();
+
+	/**
+	 * Instantiates a new stage stats.
+	 *
+	 * @param position
+	 *            the position of the stage in the pipeline
+	 * @param name
+	 *            the name
+	 */
+	StageStats(final int position, final String name) {
+		this.position = position;
+		this.name = name;
+	}
+
+	/**
+	 * Gets the position of the predicate or function among the mogrifiers, in
+	 * the order they are applied, starting at 0.
+	 *
+	 * @return the position
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Gets the name, the description of the predicate or function.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the lines seen.
+	 *
+	 * @return the lines in
+	 */
+	public long getLinesIn() {
+		return linesIn.sum();
+	}
+
+	/**
+	 * Gets the lines dropped by a predicate.
+	 *
+	 * @return the lines dropped
+	 */
+	public long getLinesDropped() {
+		return linesDropped.sum();
+	}
+
+	/**
+	 * Gets the lines changed by a function.
+	 *
+	 * @return the lines changed
+	 */
+	public long getLinesChanged() {
+		return linesChanged.sum();
+	}
+
+	/**
+	 * Gets the chars seen.
+	 *
+	 * @return the chars in
+	 */
+	public long getCharsIn() {
+		return charsIn.sum();
+	}
+
+	/**
+	 * Gets the chars returned by a function.
+	 *
+	 * @return the chars out
+	 */
+	public long getCharsOut() {
+		return charsOut.sum();
+	}
+
+	/**
+	 * Gets the bytes seen.
+	 *
+	 * @return the bytes in
+	 */
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	/**
+	 * Gets the bytes returned by a function.
+	 *
+	 * @return the bytes out
+	 */
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	/**
+	 * Gets the cumulative time spent, in nanoseconds.
+	 *
+	 * @return the nanos
+	 */
+	public long getNanos() {
+		return nanos.sum();
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	void reset() {
+		linesIn.reset();
+		linesDropped.reset();
+		linesChanged.reset();
+		charsIn.reset();
+		charsOut.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		nanos.reset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "StageStats [position=" + position + ", name=" + name
+				+ ", linesIn=" + linesIn
+				+ ", linesDropped=" + linesDropped + ", linesChanged="
+				+ linesChanged + ", nanos=" + nanos + "]";
+	}
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * A predicate that applies if any of its predicates applies, reordering them
+ * at runtime so that cheap predicates that apply often run first.
+ *
+ * About every {@value #SAMPLE_INTERVAL}th line is a sample: all predicates are
+ * tested on it, recording for each whether it applied and how long it took.
+ * Every {@value #SAMPLES_PER_REORDER} samples the predicates are sorted by
+ * their average time divided by their hit rate, which minimizes the expected
+ * time of the OR for independent predicates, and the statistics are halved so
+ * that the order follows changes in the input. Predicates that never applied
+ * go last. As the predicates have no side effects, the result is the same in
+ * any order.
+ *
+ * The predicates on UTF-8 encoded lines are only used if all predicates are
+ * {@link Utf8Predicate}s. The predicate is safe to use from several threads if
+ * its predicates are.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class AdaptiveOrPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
+
+	/** The Constant SAMPLE_INTERVAL. */
+	static final int SAMPLE_INTERVAL = 64;
+
+	/** The Constant SAMPLES_PER_REORDER. */
+	static final int SAMPLES_PER_REORDER = 128;
+
+	/** The predicates on chars. */
+	private final Predicate<CharSequence>[] predicates;
+
+	/** The predicates on UTF-8 encoded lines, or <code>null</code>. */
+	private final Utf8Predicate[] utf8Predicates;
+
+	/** The indexes of the predicates in the order they are tested. */
+	private volatile int[] order;
+
+	/**
+	 * The lines seen, modulo the sample interval. Updated without
+	 * synchronization, as lost updates merely shift the next sample.
+	 */
+	private int lines;
+
+	/** The samples since the last reorder. */
+	private int samples;
+
+	/** The number of samples each predicate applied to. */
+	private final double[] hits;
+
+	/** The time each predicate took on the samples, in nanoseconds. */
+	private final double[] nanos;
+
+	/**
+	 * Instantiates a new adaptive or predicate.
+	 *
+	 * @param predicates
+	 *            the predicates, in their initial order
+	 */
+	@SuppressWarnings("unchecked")
+	public AdaptiveOrPredicate(final List<?> predicates) {
+		final int size = predicates.size();
+		this.predicates = newArray(size);
+		Utf8Predicate[] utf8 = new Utf8Predicate[size];
+		order = new int[size];
+		for (int i = 0; i < size; i++) {
+			final Object predicate = predicates.get(i);
+			this.predicates[i] = (Predicate<CharSequence>) predicate;
+			if (utf8 != null && predicate instanceof Utf8Predicate) {
+				utf8[i] = (Utf8Predicate) predicate;
+			} else {
+				utf8 = null;
+			}
+			order[i] = i;
+		}
+		utf8Predicates = utf8;
+		hits = new double[size];
+		nanos = new double[size];
+	}
+
+	/**
+	 * Creates an array of predicates.
+	 *
+	 * @param size
+	 *            the size
+	 * @return the array
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Predicate<CharSequence>[] newArray(final int size) {
+		return new Predicate[size];
+	}
+
+	/**
+	 * Checks if the line is a sample.
+	 *
+	 * @return true, if the line is a sample
+	 */
+	private boolean isSample() {
+		if (++lines < SAMPLE_INTERVAL) {
+			return false;
+		}
+		lines = 0;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
+	 */
+	@Override
+	public boolean apply(final CharSequence input) {
+		if (isSample()) {
+			final boolean[] results = new boolean[predicates.length];
+			final long[] times = new long[predicates.length];
+			boolean result = false;
+			for (int i = 0; i < predicates.length; i++) {
+				final long start = System.nanoTime();
+				results[i] = predicates[i].apply(input);
+				times[i] = System.nanoTime() - start;
+				result |= results[i];
+			}
+			record(results, times);
+			return result;
+		}
+
+		for (final int index : order) {
+			if (predicates[index].apply(input)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Predicates == null) {
+			return apply(line.toString());
+		}
+
+		if (isSample()) {
+			final boolean[] results = new boolean[utf8Predicates.length];
+			final long[] times = new long[utf8Predicates.length];
+			boolean result = false;
+			for (int i = 0; i < utf8Predicates.length; i++) {
+				final long start = System.nanoTime();
+				results[i] = utf8Predicates[i].applyUtf8(line);
+				times[i] = System.nanoTime() - start;
+				result |= results[i];
+			}
+			record(results, times);
+			return result;
+		}
+
+		for (final int index : order) {
+			if (utf8Predicates[index].applyUtf8(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Records a sample, reordering the predicates if enough samples have been
+	 * seen.
+	 *
+	 * @param results
+	 *            the result of each predicate
+	 * @param times
+	 *            the time each predicate took
+	 */
+	private synchronized void record(final boolean[] results,
+			final long[] times) {
+		for (int i = 0; i < results.length; i++) {
+			if (results[i]) {
+				hits[i]++;
+			}
+			nanos[i] += times[i];
+		}
+
+		if (++samples < SAMPLES_PER_REORDER) {
+			return;
+		}
+		samples = 0;
+
+		final Integer[] indexes = new Integer[predicates.length];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = order[i];
+		}
+		// stable, so predicates of equal rank keep their order
+		Arrays.sort(indexes, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Double.compare(rank(a), rank(b));
+			}
+
+		});
+
+		final int[] newOrder = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			newOrder[i] = indexes[i];
+			hits[i] /= 2;
+			nanos[i] /= 2;
+		}
+		order = newOrder;
+	}
+
+	/**
+	 * Returns the rank of a predicate, the expected time spent on it per line
+	 * it applies to. Lower ranks run first.
+	 *
+	 * @param index
+	 *            the index of the predicate
+	 * @return the rank
+	 */
+	private double rank(final int index) {
+		if (hits[index] == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return nanos[index] / hits[index];
+	}
+
+	/**
+	 * Gets the predicates in the order they are currently tested.
+	 *
+	 * @return the predicates
+	 */
+	public List<Predicate<CharSequence>> getOrder() {
+		final List<Predicate<CharSequence>> list = Lists.newArrayList();
+		for (final int index : order) {
+			list.add(predicates[index]);
+		}
+		return list;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AdaptiveOrPredicate [predicates=" + getOrder() + "]";
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Static helpers for the {@link String} methods the predicates need, working
+ * on any {@link CharSequence}. Strings are delegated to their own methods.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+final class CharSequences {
+
+	/**
+	 * Instantiates a new char sequences.
+	 */
+	private CharSequences() {
+	}
+
+	/**
+	 * Tests if the sequence starts with the given prefix.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @param prefix
+	 *            the prefix
+	 * @return true, if successful
+	 */
+	static boolean startsWith(final CharSequence sequence, final String prefix) {
+		if (sequence instanceof String) {
+			return ((String) sequence).startsWith(prefix);
+		}
+		return regionMatches(sequence, 0, prefix);
+	}
+
+	/**
+	 * Tests if the sequence ends with the given suffix.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @param suffix
+	 *            the suffix
+	 * @return true, if successful
+	 */
+	static boolean endsWith(final CharSequence sequence, final String suffix) {
+		if (sequence instanceof String) {
+			return ((String) sequence).endsWith(suffix);
+		}
+		return regionMatches(sequence, sequence.length() - suffix.length(),
+				suffix);
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the needle in the sequence.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @param needle
+	 *            the needle
+	 * @return the index, or -1 if the needle does not occur
+	 */
+	static int indexOf(final CharSequence sequence, final String needle) {
+		if (sequence instanceof String) {
+			return ((String) sequence).indexOf(needle);
+		}
+
+		final int needleLength = needle.length();
+		if (needleLength == 0) {
+			return 0;
+		}
+
+		final char first = needle.charAt(0);
+		final int max = sequence.length() - needleLength;
+		for (int i = 0; i <= max; i++) {
+			if (sequence.charAt(i) == first
+					&& regionMatches(sequence, i, needle)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tests if the sequence contains the other string at the given offset.
+	 *
+	 * @param sequence
+	 *            the sequence
+	 * @param offset
+	 *            the offset
+	 * @param other
+	 *            the other string
+	 * @return true, if successful
+	 */
+	static boolean regionMatches(final CharSequence sequence,
+			final int offset, final String other) {
+		final int length = other.length();
+		if (offset < 0 || offset + length > sequence.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (sequence.charAt(offset + i) != other.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the string as UTF-8 for matching on encoded lines.
+	 *
+	 * @param string
+	 *            the string
+	 * @return the bytes, or <code>null</code> if the string contains unpaired
+	 *         surrogates and thus has no exact UTF-8 encoding
+	 */
+	static byte[] encodeUtf8(final String string) {
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (!string.equals(new String(bytes, StandardCharsets.UTF_8))) {
+			return null;
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.platzhaltr.readr.automata.AhoCorasick;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * The Class ContainingAnyPredicate. Applies if a line contains any of the
+ * needles. All needles are compiled into one {@link AhoCorasick} automaton, so
+ * a line is scanned once, no matter how many needles there are.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class ContainingAnyPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
+
+	/** The needles. */
+	private final List<String> needles;
+
+	/** The automaton. */
+	private final AhoCorasick automaton;
+
+	/**
+	 * The automaton over the UTF-8 encoded needles, <code>null</code> if a
+	 * needle has none.
+	 */
+	private final AhoCorasick utf8Automaton;
+
+	/**
+	 * Instantiates a new containing any predicate.
+	 *
+	 * @param needles
+	 *            the needles
+	 */
+	public ContainingAnyPredicate(final Collection<String> needles) {
+		super();
+		this.needles = ImmutableList.copyOf(needles);
+		automaton = AhoCorasick.forStrings(needles);
+
+		final List<byte[]> utf8Needles = Lists.newArrayListWithCapacity(needles
+				.size());
+		for (final String needle : needles) {
+			final byte[] utf8Needle = CharSequences.encodeUtf8(needle);
+			if (utf8Needle == null) {
+				break;
+			}
+			utf8Needles.add(utf8Needle);
+		}
+		if (utf8Needles.size() == needles.size()) {
+			utf8Automaton = AhoCorasick.forBytes(utf8Needles);
+		} else {
+			utf8Automaton = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
+	 */
+	@Override
+	public boolean apply(final CharSequence line) {
+		return automaton.containsAny(line);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Automaton == null) {
+			return apply(line.toString());
+		}
+		return utf8Automaton.containsAny(line.array(), line.offset(),
+				line.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ContainingAnyPredicate [needles=" + needles + "]";
+	}
+
+}
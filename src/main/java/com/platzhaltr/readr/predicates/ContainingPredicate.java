@@ -16,17 +16,22 @@
 package com.platzhaltr.readr.predicates;
 
 import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
  * The Class ContainingPredicate.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class ContainingPredicate implements Predicate<String> {
+public class ContainingPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
 
 	/** The needle. */
 	private final String needle;
 
+	/** The UTF-8 encoded needle, <code>null</code> if it has none. */
+	private final byte[] utf8Needle;
+
 	/**
 	 * Instantiates a new contains predicate.
 	 *
@@ -36,6 +41,16 @@ public class ContainingPredicate implements Predicate<String> {
 	public ContainingPredicate(final String needle) {
 		super();
 		this.needle = needle;
+		utf8Needle = CharSequences.encodeUtf8(needle);
+	}
+
+	/**
+	 * Gets the needle.
+	 *
+	 * @return the needle
+	 */
+	public String getNeedle() {
+		return needle;
 	}
 
 	/*
@@ -44,7 +59,33 @@ public class ContainingPredicate implements Predicate<String> {
 	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
 	 */
 	@Override
-	public boolean apply(final String line) {
-		return line.contains(needle);
+	public boolean apply(final CharSequence line) {
+		return CharSequences.indexOf(line, needle) >= 0;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Needle == null) {
+			return apply(line.toString());
+		}
+		return line.indexOf(utf8Needle) >= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ContainingPredicate [needle=" + needle + "]";
+	}
+
 }
@@ -16,13 +16,15 @@
 package com.platzhaltr.readr.predicates;
 
 import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
  * The Class EmptyPredicate.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class EmptyPredicate implements Predicate<String> {
+public class EmptyPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
 
 	/*
 	 * (non-Javadoc)
@@ -30,8 +32,30 @@ public class EmptyPredicate implements Predicate<String> {
 	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
 	 */
 	@Override
-	public boolean apply(final String input) {
-		return input.isEmpty();
+	public boolean apply(final CharSequence input) {
+		return input.length() == 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		return line.length() == 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "EmptyPredicate";
 	}
 
 }
@@ -16,17 +16,22 @@
 package com.platzhaltr.readr.predicates;
 
 import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
  * The Class EndingWithPredicate.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class EndingWithPredicate implements Predicate<String> {
+public class EndingWithPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
 
 	/** The suffix. */
 	private final String suffix;
 
+	/** The UTF-8 encoded suffix, <code>null</code> if it has none. */
+	private final byte[] utf8Suffix;
+
 	/**
 	 * Instantiates a new ending with predicate.
 	 *
@@ -35,6 +40,16 @@ public class EndingWithPredicate implements Predicate<String> {
 	 */
 	public EndingWithPredicate(final String suffix) {
 		this.suffix = suffix;
+		utf8Suffix = CharSequences.encodeUtf8(suffix);
+	}
+
+	/**
+	 * Gets the suffix.
+	 *
+	 * @return the suffix
+	 */
+	public String getSuffix() {
+		return suffix;
 	}
 
 	/*
@@ -43,8 +58,33 @@ public class EndingWithPredicate implements Predicate<String> {
 	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
 	 */
 	@Override
-	public boolean apply(final String line) {
-		return line.endsWith(suffix);
+	public boolean apply(final CharSequence line) {
+		return CharSequences.endsWith(line, suffix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Suffix == null) {
+			return apply(line.toString());
+		}
+		return line.endsWith(utf8Suffix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "EndingWithPredicate [suffix=" + suffix + "]";
 	}
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.platzhaltr.readr.automata.RegexAutomaton;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * The Class MatchingAnyPredicate. Applies if a line matches any of the
+ * regular expressions. All regular expressions supported by
+ * {@link RegexAutomaton} are compiled into one automaton, so a line is
+ * scanned once for all of them. The remaining ones are matched one by one,
+ * each by a {@link MatchingPredicate}.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class MatchingAnyPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
+
+	/** The regexes. */
+	private final List<String> regexes;
+
+	/** The automaton, <code>null</code> if no regex is supported. */
+	private final RegexAutomaton automaton;
+
+	/** The predicates for the unsupported regexes. */
+	private final List<MatchingPredicate> others = Lists.newArrayList();
+
+	/**
+	 * Instantiates a new matching any predicate.
+	 *
+	 * @param regexes
+	 *            the regexes
+	 */
+	public MatchingAnyPredicate(final Collection<String> regexes) {
+		super();
+		this.regexes = ImmutableList.copyOf(regexes);
+		final List<String> supported = Lists.newArrayList();
+		for (final String regex : regexes) {
+			if (RegexAutomaton.isSupported(regex)) {
+				supported.add(regex);
+			} else {
+				others.add(new MatchingPredicate(regex));
+			}
+		}
+		automaton = supported.isEmpty() ? null : RegexAutomaton
+				.forRegexes(supported);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
+	 */
+	@Override
+	public boolean apply(final CharSequence line) {
+		if (automaton != null && automaton.matchesAny(line)) {
+			return true;
+		}
+		for (final MatchingPredicate predicate : others) {
+			if (predicate.apply(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (automaton != null && automaton.matchesAny(line.toString())) {
+			return true;
+		}
+		for (final MatchingPredicate predicate : others) {
+			if (predicate.applyUtf8(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MatchingAnyPredicate [regexes=" + regexes + "]";
+	}
+
+}
@@ -19,17 +19,37 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
- * The Class MatchingPredicate.
+ * The Class MatchingPredicate. Lines that cannot match, judging by the
+ * literals, anchors and minimum length of the regular expression, are
+ * rejected before running it. Each thread reuses its own {@link Matcher}.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class MatchingPredicate implements Predicate<String> {
+public class MatchingPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
+
+	/** The regex. */
+	private final String regex;
 
 	/** The pattern. */
 	private final Pattern pattern;
 
+	/** The prefilter. */
+	private final RegexPrefilter prefilter;
+
+	/** The matcher per thread. */
+	private final ThreadLocal<Matcher> matchers = new ThreadLocal<Matcher>() {
+
+		@Override
+		protected Matcher initialValue() {
+			return pattern.matcher("");
+		}
+
+	};
+
 	/**
 	 * Instantiates a new matching predicate.
 	 *
@@ -37,7 +57,18 @@ public class MatchingPredicate implements Predicate<String> {
 	 *            the regex
 	 */
 	public MatchingPredicate(final String regex) {
+		this.regex = regex;
 		pattern = Pattern.compile(regex);
+		prefilter = RegexPrefilter.analyze(regex);
+	}
+
+	/**
+	 * Gets the regex.
+	 *
+	 * @return the regex
+	 */
+	public String getRegex() {
+		return regex;
 	}
 
 	/*
@@ -46,9 +77,39 @@ public class MatchingPredicate implements Predicate<String> {
 	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
 	 */
 	@Override
-	public boolean apply(final String line) {
-		final Matcher matcher = pattern.matcher(line);
-		return matcher.matches();
+	public boolean apply(final CharSequence line) {
+		if (!prefilter.mayMatch(line)) {
+			return false;
+		}
+		if (prefilter.isExact()) {
+			return true;
+		}
+		return matchers.get().reset(line).matches();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (!prefilter.mayMatch(line)) {
+			return false;
+		}
+		return apply(line.toString());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MatchingPredicate [regex=" + regex + "]";
 	}
 
 }
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * Necessary conditions for a line to match a regular expression as a whole,
+ * derived from the regular expression: its minimum length, the literal it
+ * must start with, the literal it must end with and the longest literal it
+ * must contain. Lines failing any of them are rejected without running the
+ * regular expression.
+ *
+ * The analysis only looks at the top level of the regular expression and
+ * gives up on anything it does not understand, like alternations, inline
+ * flags, quoting or back references. Groups and character classes are
+ * skipped. Giving up yields a prefilter that accepts every line.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+final class RegexPrefilter {
+
+	/** The Constant METACHARACTERS. */
+	private static final String METACHARACTERS = "\\[](){}.*+?^$|";
+
+	/** The Constant CLASS_ESCAPES. */
+	private static final String CLASS_ESCAPES = "dDsSwWhHvV";
+
+	/** The Constant BOUNDARY_ESCAPES. */
+	private static final String BOUNDARY_ESCAPES = "bBAGzZ";
+
+	/** The prefilter accepting every line. */
+	private static final RegexPrefilter NONE = new RegexPrefilter(0, "", "",
+			"", false);
+
+	/** The minimum length of a matching line. */
+	private final int minLength;
+
+	/** The literal a matching line starts with. */
+	private final String prefix;
+
+	/** The literal a matching line ends with. */
+	private final String suffix;
+
+	/** The longest literal a matching line contains. */
+	private final String infix;
+
+	/** If <code>true</code>, the regular expression is just the prefix. */
+	private final boolean exact;
+
+	/** The UTF-8 encoded prefix, <code>null</code> if it has none. */
+	private final byte[] utf8Prefix;
+
+	/** The UTF-8 encoded suffix, <code>null</code> if it has none. */
+	private final byte[] utf8Suffix;
+
+	/** The UTF-8 encoded infix, <code>null</code> if it has none. */
+	private final byte[] utf8Infix;
+
+	/**
+	 * Instantiates a new regex prefilter.
+	 *
+	 * @param minLength
+	 *            the min length
+	 * @param prefix
+	 *            the prefix
+	 * @param suffix
+	 *            the suffix
+	 * @param infix
+	 *            the infix
+	 * @param exact
+	 *            the exact
+	 */
+	private RegexPrefilter(final int minLength, final String prefix,
+			final String suffix, final String infix, final boolean exact) {
+		this.minLength = minLength;
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.infix = infix;
+		this.exact = exact;
+		utf8Prefix = CharSequences.encodeUtf8(prefix);
+		utf8Suffix = CharSequences.encodeUtf8(suffix);
+		utf8Infix = CharSequences.encodeUtf8(infix);
+	}
+
+	/**
+	 * Analyzes the regular expression.
+	 *
+	 * @param regex
+	 *            the regex, which must compile
+	 * @return the regex prefilter
+	 */
+	static RegexPrefilter analyze(final String regex) {
+		final int length = regex.length();
+		int minLength = 0;
+		String prefix = null;
+		String infix = "";
+		final StringBuilder run = new StringBuilder();
+		// nothing that consumes input precedes the current run
+		boolean runAtStart = true;
+		boolean onlyLiterals = true;
+
+		int i = 0;
+		while (i < length) {
+			final char c = regex.charAt(i);
+			int atomLength;
+			char literal = 0;
+			boolean isLiteral = false;
+
+			if (c == '|') {
+				return NONE;
+			} else if (Character.isSurrogate(c)) {
+				// a quantifier would apply to the whole code point
+				return NONE;
+			} else if (c == '^' || c == '$') {
+				onlyLiterals = false;
+				i++;
+				continue;
+			} else if (c == '\\') {
+				if (i + 1 >= length) {
+					return NONE;
+				}
+				final char escaped = regex.charAt(i + 1);
+				if (!Character.isLetterOrDigit(escaped)) {
+					isLiteral = true;
+					literal = escaped;
+					atomLength = 1;
+					i += 2;
+				} else if (CLASS_ESCAPES.indexOf(escaped) >= 0) {
+					atomLength = 1;
+					i += 2;
+				} else if (BOUNDARY_ESCAPES.indexOf(escaped) >= 0) {
+					onlyLiterals = false;
+					i += 2;
+					continue;
+				} else if (escaped == 'p' || escaped == 'P') {
+					atomLength = 1;
+					i += 2;
+					if (i < length && regex.charAt(i) == '{') {
+						i = regex.indexOf('}', i) + 1;
+						if (i == 0) {
+							return NONE;
+						}
+					} else {
+						i++;
+					}
+				} else if (escaped == 't' || escaped == 'n' || escaped == 'r'
+						|| escaped == 'f' || escaped == 'a' || escaped == 'e') {
+					isLiteral = true;
+					literal = "\t\n\r\f\u0007\u001b".charAt("tnrfae"
+							.indexOf(escaped));
+					atomLength = 1;
+					i += 2;
+				} else {
+					return NONE;
+				}
+			} else if (c == '[') {
+				i = skipClass(regex, i);
+				if (i < 0) {
+					return NONE;
+				}
+				atomLength = 1;
+			} else if (c == '(') {
+				if (i + 2 < length && regex.charAt(i + 1) == '?'
+						&& ":=!<>".indexOf(regex.charAt(i + 2)) < 0) {
+					// inline flags may change how literals match
+					return NONE;
+				}
+				i = skipGroup(regex, i);
+				if (i < 0) {
+					return NONE;
+				}
+				atomLength = 0;
+			} else if (c == '.') {
+				atomLength = 1;
+				i++;
+			} else if (METACHARACTERS.indexOf(c) >= 0) {
+				return NONE;
+			} else {
+				isLiteral = true;
+				literal = c;
+				atomLength = 1;
+				i++;
+			}
+
+			// the quantifier
+			int min = 1;
+			boolean quantified = false;
+			if (i < length) {
+				final char q = regex.charAt(i);
+				if (q == '?' || q == '*') {
+					min = 0;
+					quantified = true;
+					i++;
+				} else if (q == '+') {
+					quantified = true;
+					i++;
+				} else if (q == '{') {
+					final int close = regex.indexOf('}', i);
+					if (close < 0) {
+						return NONE;
+					}
+					final String bounds = regex.substring(i + 1, close);
+					final int comma = bounds.indexOf(',');
+					try {
+						min = Integer.parseInt(comma < 0 ? bounds : bounds
+								.substring(0, comma));
+					} catch (final NumberFormatException e) {
+						return NONE;
+					}
+					quantified = true;
+					i = close + 1;
+				}
+				// lazy or possessive
+				if (quantified && i < length
+						&& (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+					i++;
+				}
+			}
+			minLength += atomLength * min;
+
+			if (!isLiteral || quantified) {
+				onlyLiterals = false;
+			}
+
+			if (isLiteral && min > 0) {
+				run.append(literal);
+				if (!quantified) {
+					continue;
+				}
+			}
+
+			// the run ends here
+			if (runAtStart && prefix == null) {
+				prefix = run.toString();
+			}
+			if (run.length() > infix.length()) {
+				infix = run.toString();
+			}
+			run.setLength(0);
+			runAtStart = false;
+		}
+
+		final String suffix = run.toString();
+		if (prefix == null) {
+			prefix = suffix;
+		}
+		if (onlyLiterals) {
+			return new RegexPrefilter(minLength, prefix, suffix, "", true);
+		}
+		if (infix.equals(prefix)) {
+			infix = "";
+		}
+		return new RegexPrefilter(minLength, prefix, suffix, infix, false);
+	}
+
+	/**
+	 * Skips a character class.
+	 *
+	 * @param regex
+	 *            the regex
+	 * @param start
+	 *            the index of the opening bracket
+	 * @return the index after the closing bracket, or -1
+	 */
+	private static int skipClass(final String regex, final int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				i++;
+				// a leading ] is literal
+				if (i < regex.length() && regex.charAt(i) == '^') {
+					i++;
+				}
+				if (i < regex.length() && regex.charAt(i) == ']') {
+					i++;
+				}
+				continue;
+			}
+			if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a group.
+	 *
+	 * @param regex
+	 *            the regex
+	 * @param start
+	 *            the index of the opening parenthesis
+	 * @return the index after the closing parenthesis, or -1
+	 */
+	private static int skipGroup(final String regex, final int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+					return -1;
+				}
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				i = skipClass(regex, i);
+				if (i < 0) {
+					return -1;
+				}
+				continue;
+			}
+			if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if the line may match.
+	 *
+	 * @param line
+	 *            the line
+	 * @return false, if the line cannot match
+	 */
+	boolean mayMatch(final CharSequence line) {
+		if (line.length() < minLength) {
+			return false;
+		}
+		if (exact) {
+			return line.length() == minLength
+					&& CharSequences.startsWith(line, prefix);
+		}
+		return CharSequences.startsWith(line, prefix)
+				&& CharSequences.endsWith(line, suffix)
+				&& (infix.isEmpty() || CharSequences.indexOf(line, infix) >= 0);
+	}
+
+	/**
+	 * Checks if the UTF-8 encoded line may match. A line of n bytes has at
+	 * most n chars.
+	 *
+	 * @param line
+	 *            the line
+	 * @return false, if the line cannot match
+	 */
+	boolean mayMatch(final ByteLine line) {
+		if (line.length() < minLength) {
+			return false;
+		}
+		return (utf8Prefix == null || line.startsWith(utf8Prefix))
+				&& (utf8Suffix == null || line.endsWith(utf8Suffix))
+				&& (utf8Infix == null || utf8Infix.length == 0 || line
+						.indexOf(utf8Infix) >= 0);
+	}
+
+	/**
+	 * Checks if a line that may match certainly matches, without running the
+	 * regular expression.
+	 *
+	 * @return true, if the regular expression is a plain literal
+	 */
+	boolean isExact() {
+		return exact;
+	}
+
+}
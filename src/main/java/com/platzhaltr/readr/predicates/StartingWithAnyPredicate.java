@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.platzhaltr.readr.automata.PrefixTrie;
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * The Class StartingWithAnyPredicate. Applies if a line starts with any of the
+ * prefixes. All prefixes are compiled into one {@link PrefixTrie}, so a line
+ * is checked in a single walk bounded by the longest prefix.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public class StartingWithAnyPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
+
+	/** The prefixes. */
+	private final List<String> prefixes;
+
+	/** The trie. */
+	private final PrefixTrie trie;
+
+	/**
+	 * The trie over the UTF-8 encoded prefixes, <code>null</code> if a prefix
+	 * has none.
+	 */
+	private final PrefixTrie utf8Trie;
+
+	/**
+	 * Instantiates a new starting with any predicate.
+	 *
+	 * @param prefixes
+	 *            the prefixes
+	 */
+	public StartingWithAnyPredicate(final Collection<String> prefixes) {
+		super();
+		this.prefixes = ImmutableList.copyOf(prefixes);
+		trie = PrefixTrie.forStrings(prefixes);
+
+		final List<byte[]> utf8Prefixes = Lists
+				.newArrayListWithCapacity(prefixes.size());
+		for (final String prefix : prefixes) {
+			final byte[] utf8Prefix = CharSequences.encodeUtf8(prefix);
+			if (utf8Prefix == null) {
+				break;
+			}
+			utf8Prefixes.add(utf8Prefix);
+		}
+		if (utf8Prefixes.size() == prefixes.size()) {
+			utf8Trie = PrefixTrie.forBytes(utf8Prefixes);
+		} else {
+			utf8Trie = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
+	 */
+	@Override
+	public boolean apply(final CharSequence line) {
+		return trie.matchesAny(line);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Trie == null) {
+			return apply(line.toString());
+		}
+		return utf8Trie.matchesAny(line.array(), line.offset(), line.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "StartingWithAnyPredicate [prefixes=" + prefixes + "]";
+	}
+
+}
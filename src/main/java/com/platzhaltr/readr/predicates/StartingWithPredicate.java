@@ -16,17 +16,22 @@
 package com.platzhaltr.readr.predicates;
 
 import com.google.common.base.Predicate;
+import com.platzhaltr.readr.io.ByteLine;
 
 /**
  * The Class StartingWithPredicate.
  *
  * @author Oliver Schrenk <oliver.schrenk@gmail.com>
  */
-public class StartingWithPredicate implements Predicate<String> {
+public class StartingWithPredicate implements Predicate<CharSequence>,
+		Utf8Predicate {
 
 	/** The prefix. */
 	private final String prefix;
 
+	/** The UTF-8 encoded prefix, <code>null</code> if it has none. */
+	private final byte[] utf8Prefix;
+
 	/**
 	 * Instantiates a new starting with predicate.
 	 *
@@ -35,6 +40,16 @@ public class StartingWithPredicate implements Predicate<String> {
 	 */
 	public StartingWithPredicate(final String prefix) {
 		this.prefix = prefix;
+		utf8Prefix = CharSequences.encodeUtf8(prefix);
+	}
+
+	/**
+	 * Gets the prefix.
+	 *
+	 * @return the prefix
+	 */
+	public String getPrefix() {
+		return prefix;
 	}
 
 	/*
@@ -43,8 +58,33 @@ public class StartingWithPredicate implements Predicate<String> {
 	 * @see com.google.common.base.Predicate#apply(java.lang.Object)
 	 */
 	@Override
-	public boolean apply(final String line) {
-		return line.startsWith(prefix);
+	public boolean apply(final CharSequence line) {
+		return CharSequences.startsWith(line, prefix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.platzhaltr.readr.predicates.Utf8Predicate#applyUtf8(com.platzhaltr
+	 * .readr.io.ByteLine)
+	 */
+	@Override
+	public boolean applyUtf8(final ByteLine line) {
+		if (utf8Prefix == null) {
+			return apply(line.toString());
+		}
+		return line.startsWith(utf8Prefix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "StartingWithPredicate [prefix=" + prefix + "]";
 	}
 
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 Oliver Schrenk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.platzhaltr.readr.predicates;
+
+import com.platzhaltr.readr.io.ByteLine;
+
+/**
+ * A predicate on lines that can also be tested on the UTF-8 encoded line,
+ * without decoding it.
+ *
+ * @author Oliver Schrenk <oliver.schrenk@gmail.com>
+ */
+public interface Utf8Predicate {
+
+	/**
+	 * Tests the UTF-8 encoded line. The result must be the same as applying
+	 * the predicate to the decoded line.
+	 *
+	 * @param line
+	 *            the line
+	 * @return true, if successful
+	 */
+	boolean applyUtf8(ByteLine line);
+
+}
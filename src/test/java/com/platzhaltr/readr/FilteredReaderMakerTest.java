@@ -16,18 +16,67 @@
 package com.platzhaltr.readr;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.platzhaltr.readr.io.BackgroundInputStream;
+import com.platzhaltr.readr.io.Checkpoint;
+import com.platzhaltr.readr.io.CheckpointListener;
+import com.platzhaltr.readr.io.FileFollower;
+import com.platzhaltr.readr.io.LineListener;
+import com.platzhaltr.readr.io.MappedLineReader;
+import com.platzhaltr.readr.io.ParallelGzipInputStream;
+import com.platzhaltr.readr.io.ReadAheadInputStream;
+import com.platzhaltr.readr.metrics.PipelineStats;
+import com.platzhaltr.readr.metrics.StageStats;
+import com.platzhaltr.readr.predicates.AdaptiveOrPredicate;
+import com.platzhaltr.readr.predicates.MatchingPredicate;
+import com.platzhaltr.readr.predicates.StartingWithPredicate;
 
 public class FilteredReaderMakerTest {
 
@@ -40,6 +89,13 @@ public class FilteredReaderMakerTest {
 	/** The Constant PATH_TRIM_LINES. */
 	private static final String PATH_TRIM_LINES = "/trim.txt";
 
+	/** The Constant PATH_MIXED. */
+	private static final String PATH_MIXED = "/mixed.txt";
+
+	/** The folder. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	/** The maker. */
 	private MogrifiedReaderMaker maker;
 
@@ -84,6 +140,995 @@ public class FilteredReaderMakerTest {
 		assertEquals("bar", lines.get(1));
 	}
 
+	@Test
+	public void testAlternatingMogrifiers() throws FileNotFoundException,
+			IOException {
+		maker.trim();
+		maker.omitLines().startingWith("#");
+		maker.transformLines().byReplacing("bar", "#bar");
+		maker.omitLines().containing("needle");
+
+		final List<String> lines = readAsList(maker.read(getFile(PATH_MIXED)));
+
+		assertEquals(1, lines.size());
+		assertEquals("foo", lines.get(0));
+	}
+
+	@Test
+	public void testLineTerminators() throws IOException {
+		final StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			longLine.append('x');
+		}
+
+		maker.omitLines().startingWith("#");
+
+		final List<String> lines = readAsList(maker.wrap(new StringReader(
+				"foo\r\n#comment\rbar\r\r\n" + longLine + "\nbaz")));
+
+		assertEquals(5, lines.size());
+		assertEquals("foo", lines.get(0));
+		assertEquals("bar", lines.get(1));
+		assertEquals("", lines.get(2));
+		assertEquals(longLine.toString(), lines.get(3));
+		assertEquals("baz", lines.get(4));
+	}
+
+	@Test
+	public void testReadFillsBufferAcrossLines() throws IOException {
+		maker.omitLines().startingWith("#");
+
+		final Reader reader = maker.wrap(new StringReader("a\nb\n#c\nd"));
+		final char[] buffer = new char[64];
+
+		assertEquals(6, reader.read(buffer, 0, buffer.length));
+		assertEquals("a\nb\nd\n", new String(buffer, 0, 6));
+		assertEquals(-1, reader.read(buffer, 0, buffer.length));
+	}
+
+	@Test
+	public void testReadSingleCharacters() throws IOException {
+		maker.skipEmptyLines();
+
+		final Reader reader = maker.wrap(new StringReader("a\n\nbc"));
+		final StringBuilder builder = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			builder.append((char) c);
+		}
+
+		assertEquals("a\nbc\n", builder.toString());
+	}
+
+	@Test
+	public void testReadPath() throws IOException {
+		maker.omitLines().startingWith("#");
+		maker.omitLines().containing("needle");
+
+		final List<String> lines = readAsList(maker.read(getFile(PATH_SIMPLE)
+				.toPath()));
+
+		assertEquals(1, lines.size());
+		assertEquals("foo", lines.get(0));
+	}
+
+	@Test
+	public void testReadCharset() throws IOException {
+		maker.omitLines().containing("needle");
+		final String input = "caf\u00e9 au lait\nneedle\n\u00fcber\u00e4ll\nplain\n";
+		final List<String> expected = Arrays.asList("caf\u00e9 au lait",
+				"\u00fcber\u00e4ll", "plain");
+
+		for (final Charset charset : Arrays.asList(StandardCharsets.UTF_8,
+				StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16)) {
+			final File file = folder.newFile(charset.name() + ".txt");
+			Files.write(file.toPath(), input.getBytes(charset));
+
+			assertEquals(expected, readAsList(maker.read(file, charset)));
+			assertEquals(expected,
+					readAsList(maker.read(file.toPath(), charset)));
+		}
+	}
+
+	@Test
+	public void testReadCompressed() throws IOException {
+		maker.omitLines().containing("needle");
+		// not idempotent, so applying the mogrifiers twice shows
+		maker.transformLines().byReplacing("plain", "plain!");
+		final String input = "caf\u00e9\nneedle\nplain\n";
+		final List<String> expected = Arrays.asList("caf\u00e9", "plain!");
+
+		final File gzip = folder.newFile("single.gz");
+		final OutputStream gzipOut = new GZIPOutputStream(
+				new FileOutputStream(gzip));
+		gzipOut.write(input.getBytes(StandardCharsets.UTF_8));
+		gzipOut.close();
+		assertEquals(expected, readAsList(maker.read(gzip.toPath(),
+				StandardCharsets.UTF_8)));
+		final Stream<String> lines = maker.lines(gzip.toPath(),
+				StandardCharsets.UTF_8);
+		try {
+			assertEquals(expected, lines.collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+
+		final File zip = folder.newFile("entries.zip");
+		final ZipOutputStream zipOut = new ZipOutputStream(
+				new FileOutputStream(zip));
+		zipOut.putNextEntry(new ZipEntry("dir/"));
+		zipOut.putNextEntry(new ZipEntry("dir/first.txt"));
+		zipOut.write("caf\u00e9\nneedle\n".getBytes(StandardCharsets.UTF_8));
+		zipOut.putNextEntry(new ZipEntry("second.txt"));
+		zipOut.write("plain\n".getBytes(StandardCharsets.UTF_8));
+		zipOut.close();
+		assertEquals(expected, readAsList(maker.read(zip.toPath(),
+				StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testReadAhead() throws IOException {
+		final File file = newNumberedFile("ahead.txt");
+		final List<String> expected = readAsList(parallel(maker).read(
+				file.toPath()));
+
+		assertEquals(expected, readAsList(parallel(new MogrifiedReaderMaker())
+				.readAhead(file.toPath(), StandardCharsets.US_ASCII, 3)));
+
+		final File small = folder.newFile("small.txt");
+		final byte[] bytes = "f\u00f6\u00f6\nbar\nbaz\n"
+				.getBytes(StandardCharsets.UTF_8);
+		Files.write(small.toPath(), bytes);
+		final InputStream in = new ReadAheadInputStream(small.toPath(), 2, 3);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int read;
+		while ((read = in.read()) != -1) {
+			out.write(read);
+		}
+		in.close();
+		assertTrue(Arrays.equals(bytes, out.toByteArray()));
+	}
+
+	@Test
+	public void testReadMultiMemberGzip() throws IOException {
+		// stored members whose contents look like member headers
+		final byte[] fake = { 0x1f, (byte) 0x8b, 8, 0 };
+		final File file = folder.newFile("members.gz");
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final OutputStream out = new FileOutputStream(file);
+		for (int i = 0; i < 200; i++) {
+			final ByteArrayOutputStream member = new ByteArrayOutputStream();
+			member.write(("member " + i + "\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			if (i % 3 == 0) {
+				member.write(fake);
+			}
+			final byte[] bytes = member.toByteArray();
+			expected.write(bytes);
+
+			final int level = i % 2 == 0 ? Deflater.NO_COMPRESSION
+					: Deflater.BEST_SPEED;
+			final GZIPOutputStream gzip = new GZIPOutputStream(out) {
+
+				{
+					def.setLevel(level);
+				}
+
+				@Override
+				public void close() throws IOException {
+					finish();
+				}
+
+			};
+			gzip.write(bytes);
+			gzip.close();
+		}
+		out.close();
+
+		final InputStream in = new ParallelGzipInputStream(file.toPath(),
+				BackgroundInputStream.sharedExecutor(), 4, 16);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[100];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			actual.write(buffer, 0, read);
+		}
+		in.close();
+
+		assertEquals(new String(expected.toByteArray(),
+				StandardCharsets.ISO_8859_1), new String(actual.toByteArray(),
+				StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void testFollow() throws IOException, InterruptedException {
+		maker.omitLines().containing("needle");
+		final Path path = folder.getRoot().toPath().resolve("follow.log");
+		Files.write(path, "old\n".getBytes(StandardCharsets.UTF_8));
+
+		final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+		final FileFollower follower = maker.follow(path,
+				StandardCharsets.UTF_8, new LineListener() {
+
+					@Override
+					public void line(final String line) {
+						lines.add(line);
+					}
+
+					@Override
+					public void failed(final IOException e) {
+						lines.add(e.toString());
+					}
+
+				});
+		final Thread thread = new Thread(follower);
+		thread.start();
+		try {
+			append(path, "caf\u00e9\r\nneedle\npartial");
+			assertEquals("caf\u00e9", lines.poll(10, TimeUnit.SECONDS));
+			append(path, " line\n");
+			assertEquals("partial line", lines.poll(10, TimeUnit.SECONDS));
+
+			// truncated
+			Files.write(path, "new\n".getBytes(StandardCharsets.UTF_8));
+			assertEquals("new", lines.poll(10, TimeUnit.SECONDS));
+
+			// rotated
+			append(path, "last");
+			Files.move(path, path.resolveSibling("follow.log.1"));
+			Files.write(path, "rotated\n".getBytes(StandardCharsets.UTF_8));
+			assertEquals("last", lines.poll(10, TimeUnit.SECONDS));
+			assertEquals("rotated", lines.poll(10, TimeUnit.SECONDS));
+		} finally {
+			follower.close();
+			thread.join(10000);
+		}
+		assertFalse(thread.isAlive());
+		assertTrue(lines.isEmpty());
+	}
+
+	/**
+	 * Appends the string to the file as UTF-8.
+	 *
+	 * @param path
+	 *            the path
+	 * @param string
+	 *            the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void append(final Path path, final String string)
+			throws IOException {
+		Files.write(path, string.getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+	}
+
+	@Test
+	public void testMappedWindows() throws IOException {
+		maker.skipEmptyLines();
+
+		final File file = folder.newFile("mapped.txt");
+		Files.write(file.toPath(),
+				"f\u00f6\u00f6\r\n\r\nbar\rlonger line\nbaz"
+						.getBytes(StandardCharsets.UTF_8));
+
+		final List<String> lines = readAsList(maker.wrap(new MappedLineReader(
+				file.toPath(), StandardCharsets.UTF_8, 3)));
+
+		assertEquals(4, lines.size());
+		assertEquals("f\u00f6\u00f6", lines.get(0));
+		assertEquals("bar", lines.get(1));
+		assertEquals("longer line", lines.get(2));
+		assertEquals("baz", lines.get(3));
+	}
+
+	@Test
+	public void testWrapStream() throws IOException {
+		maker.trim();
+		maker.transformLines().byRemovingPrefix("> ");
+		maker.omitLines().matching("\\d+");
+		maker.omitLines().containing("n\u00e4del");
+
+		final InputStream in = maker.wrapStream(new ByteArrayInputStream(
+				"> f\u00f6\u00f6 \r\nn\u00e4del\n42\n> > bar\r"
+						.getBytes(StandardCharsets.UTF_8)));
+		final List<String> lines = readAsList(new InputStreamReader(in,
+				StandardCharsets.UTF_8));
+
+		assertEquals(2, lines.size());
+		assertEquals("f\u00f6\u00f6", lines.get(0));
+		assertEquals("> bar", lines.get(1));
+	}
+
+	@Test
+	public void testContainingManyNeedles() throws IOException {
+		final String input = "ushers\nhe\nthis\nh\u00e4h\n#x\nhi s\n";
+
+		final List<String> lines = readAsList(omitManyNeedles(maker).wrap(
+				new StringReader(input)));
+		final List<String> streamed = readAsList(new InputStreamReader(
+				omitManyNeedles(new MogrifiedReaderMaker()).wrapStream(
+						new ByteArrayInputStream(input
+								.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8));
+
+		assertEquals(2, lines.size());
+		assertEquals("he", lines.get(0));
+		assertEquals("hi s", lines.get(1));
+		assertEquals(lines, streamed);
+	}
+
+	@Test
+	public void testPrefixes() throws IOException {
+		final String input = "// a\n/* b\n-- c\n; d\n> > e\n> f\n>g\n";
+
+		final List<String> lines = readAsList(prefixes(maker).wrap(
+				new StringReader(input)));
+		final List<String> streamed = readAsList(new InputStreamReader(
+				prefixes(new MogrifiedReaderMaker()).wrapStream(
+						new ByteArrayInputStream(input
+								.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8));
+
+		assertEquals(3, lines.size());
+		assertEquals("e", lines.get(0));
+		assertEquals("f", lines.get(1));
+		assertEquals("g", lines.get(2));
+		assertEquals(lines, streamed);
+	}
+
+	@Test
+	public void testReplacements() throws IOException {
+		maker.transformLines().byReplacing("cat", "dog");
+		maker.transformLines().byReplacing("red", "blue");
+		maker.transformLines().byReplacing("one", "two");
+		maker.transformLines().byReplacing("sun", "moon");
+
+		final List<String> lines = readAsList(maker.wrap(new StringReader(
+				"one red cat\nsunset\nnothing\n")));
+
+		assertEquals(3, lines.size());
+		assertEquals("two blue dog", lines.get(0));
+		assertEquals("moonset", lines.get(1));
+		assertEquals("nothing", lines.get(2));
+	}
+
+	@Test
+	public void testChainedReplacements() throws IOException {
+		// the most recently added replacement is applied first
+		maker.transformLines().byReplacing("b", "c");
+		maker.transformLines().byReplacing("x", "y");
+		maker.transformLines().byReplacing("u", "v");
+		maker.transformLines().byReplacing("a", "b");
+
+		final List<String> lines = readAsList(maker.wrap(new StringReader(
+				"abxu\n")));
+
+		assertEquals(1, lines.size());
+		assertEquals("ccyv", lines.get(0));
+
+		// a deletion joins the text around it into a match for "ab"
+		final MogrifiedReaderMaker deleting = new MogrifiedReaderMaker();
+		deleting.transformLines().byReplacing("ab", "Z");
+		deleting.transformLines().byReplacing("q1", "1");
+		deleting.transformLines().byReplacing("q2", "2");
+		deleting.transformLines().byReplacing("x", "");
+
+		assertEquals(Arrays.asList("Z"), readAsList(deleting
+				.wrap(new StringReader("axb\n"))));
+	}
+
+	@Test
+	public void testMatching() throws IOException {
+		final String input = "GET /index.html 200\nGET /a 404\nPOST /b 200\n"
+				+ "GET  200\nGET /\u00e4 200\n";
+
+		final List<String> lines = readAsList(maker.omitLines()
+				.matching("GET /.+ 200").wrap(new StringReader(input)));
+		final List<String> streamed = readAsList(new InputStreamReader(
+				new MogrifiedReaderMaker().omitLines().matching("GET /.+ 200")
+						.wrapStream(new ByteArrayInputStream(input
+								.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8));
+
+		assertEquals(3, lines.size());
+		assertEquals("GET /a 404", lines.get(0));
+		assertEquals("POST /b 200", lines.get(1));
+		assertEquals("GET  200", lines.get(2));
+		assertEquals(lines, streamed);
+	}
+
+	@Test
+	public void testMatchingManyPatterns() throws IOException {
+		final String input = "aaab\n12:30\nfoo foo\nINFO x\nWARN y\n\u00e4\n";
+
+		final List<String> lines = readAsList(omitManyPatterns(maker).wrap(
+				new StringReader(input)));
+		final List<String> streamed = readAsList(new InputStreamReader(
+				omitManyPatterns(new MogrifiedReaderMaker()).wrapStream(
+						new ByteArrayInputStream(input
+								.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8));
+
+		assertEquals(2, lines.size());
+		assertEquals("WARN y", lines.get(0));
+		assertEquals("\u00e4", lines.get(1));
+		assertEquals(lines, streamed);
+	}
+
+	@Test
+	public void testReadParallel() throws IOException {
+		final File file = newNumberedFile("parallel.txt");
+
+		final List<String> expected = readAsList(parallel(
+				new MogrifiedReaderMaker()).read(file.toPath()));
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final List<String> ordered = readAsList(parallel(maker)
+					.readParallel(file.toPath(), pool));
+			final List<String> unordered = readAsList(parallel(
+					new MogrifiedReaderMaker()).readParallel(file.toPath(),
+					pool, false));
+
+			assertEquals(900000, expected.size());
+			assertEquals(expected, ordered);
+			Collections.sort(expected);
+			Collections.sort(unordered);
+			assertEquals(expected, unordered);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCompile() throws IOException {
+		maker.trim();
+		maker.omitLines().containing("b");
+		final Pipeline pipeline = maker.compile();
+		maker.omitLines().containing("a");
+
+		final List<String> first = readAsList(pipeline.wrap(new StringReader(
+				" a \n b \n c \n")));
+		final List<String> second = readAsList(pipeline.wrap(new StringReader(
+				" a \n b \n c \n")));
+		final List<String> recompiled = readAsList(maker.wrap(new StringReader(
+				" a \n b \n c \n")));
+
+		assertEquals(2, first.size());
+		assertEquals("a", first.get(0));
+		assertEquals("c", first.get(1));
+		assertEquals(first, second);
+		assertEquals(1, recompiled.size());
+		assertEquals("c", recompiled.get(0));
+	}
+
+	@Test
+	public void testProcessDirectory() throws IOException {
+		final File directory = folder.newFolder("in");
+		final File target = folder.newFolder("out");
+		Files.write(new File(directory, "a.log").toPath(),
+				"foo\n\nbar\n".getBytes(StandardCharsets.US_ASCII));
+		Files.write(new File(directory, "b.log").toPath(),
+				"baz\n".getBytes(StandardCharsets.US_ASCII));
+		Files.write(new File(directory, "c.txt").toPath(),
+				"qux\n".getBytes(StandardCharsets.US_ASCII));
+		// b.log cannot be written
+		assertTrue(new File(target, "b.log").mkdir());
+
+		final BatchResult result = maker.skipEmptyLines().processDirectory(
+				directory.toPath(), "*.log", target.toPath(), 2);
+
+		assertEquals(1, result.getSucceeded().size());
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.getFailures().containsKey(
+				new File(directory, "b.log").toPath()));
+		assertEquals(2, result.getLinesWritten());
+		assertEquals(Arrays.asList("foo", "bar"),
+				Files.readAllLines(new File(target, "a.log").toPath(),
+						StandardCharsets.US_ASCII));
+		assertFalse(new File(target, "c.txt").exists());
+	}
+
+	@Test
+	public void testWriteTo() throws IOException {
+		maker.trim();
+		maker.omitLines().containing("needle");
+		final Pipeline pipeline = maker.compile();
+		final String input = " foo \r\nneedle\n\nbar";
+
+		final StringWriter writer = new StringWriter();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final File source = folder.newFile("source.txt");
+		final File target = new File(folder.getRoot(), "target.txt");
+		Files.write(source.toPath(), input.getBytes(Charset.defaultCharset()));
+
+		assertEquals(3, pipeline.writeTo(new StringReader(input), writer));
+		assertEquals(3, pipeline.writeTo(
+				new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+				out));
+		assertEquals(3, pipeline.writeTo(source.toPath(), target.toPath()));
+
+		final String expected = "foo\n\nbar\n";
+		assertEquals(expected, writer.toString());
+		assertEquals(expected, new String(out.toByteArray(),
+				StandardCharsets.UTF_8));
+		assertEquals(expected, new String(Files.readAllBytes(target.toPath()),
+				Charset.defaultCharset()));
+	}
+
+	@Test
+	public void testTargetIsSource() throws IOException {
+		final Pipeline pipeline = maker.trim().compile();
+		final File directory = folder.newFolder("in");
+		final File source = new File(directory, "a.log");
+		Files.write(source.toPath(),
+				" foo \n".getBytes(StandardCharsets.US_ASCII));
+
+		try {
+			pipeline.writeTo(source.toPath(), source.toPath());
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			pipeline.processDirectory(directory.toPath(), "*.log",
+					new File(directory, ".").toPath(), 2);
+			fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList(" foo "), Files.readAllLines(
+				source.toPath(), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void testCheckpointResume() throws IOException {
+		maker.trim();
+		maker.omitLines().containing("needle");
+		final Pipeline pipeline = maker.compile();
+		final Charset charset = Charset.defaultCharset();
+
+		final List<String> terminators = Arrays.asList("\n", "\r\n", "\r");
+		final StringBuilder input = new StringBuilder();
+		final List<Integer> boundaries = new LinkedList<Integer>();
+		boundaries.add(0);
+		for (int i = 0; i < 40; i++) {
+			input.append(i % 7 == 0 ? " needle " : " line ").append(i);
+			if (i < 39) {
+				final String terminator = terminators.get(i % 3);
+				input.append(terminator);
+				if (terminator.length() == 2) {
+					// between the \r and the \n
+					boundaries.add(input.length() - 1);
+				}
+				boundaries.add(input.length());
+			}
+		}
+		final Path source = folder.newFile("checkpointed.txt").toPath();
+		final Path target = folder.getRoot().toPath().resolve("resumed.txt");
+		final Path checkpoint = folder.getRoot().toPath()
+				.resolve("resumed.checkpoint");
+		Files.write(source, input.toString().getBytes(charset));
+
+		final StringWriter expected = new StringWriter();
+		final long lines = pipeline.writeTo(new StringReader(input.toString()),
+				expected);
+		assertEquals(lines, pipeline.writeTo(source, target, checkpoint, 16));
+		assertEquals(expected.toString(), new String(
+				Files.readAllBytes(target), charset));
+		assertFalse(Files.exists(checkpoint));
+
+		for (final int boundary : boundaries) {
+			// the state after a crash at the boundary
+			final StringWriter before = new StringWriter();
+			final long linesBefore = pipeline.writeTo(new StringReader(input
+					.substring(0, boundary)), before);
+			final byte[] written = before.toString().getBytes(charset);
+			new Checkpoint(boundary, written.length, linesBefore)
+					.write(checkpoint);
+			Files.write(target, written);
+			Files.write(target, "partial".getBytes(charset),
+					StandardOpenOption.APPEND);
+
+			assertEquals(lines, pipeline.writeTo(source, target, checkpoint, 16));
+			assertEquals(expected.toString(), new String(
+					Files.readAllBytes(target), charset));
+			assertFalse(Files.exists(checkpoint));
+		}
+	}
+
+	@Test
+	public void testCheckpointResumeTwice() throws IOException {
+		final Pipeline pipeline = maker.trim().compile();
+		final Charset charset = Charset.defaultCharset();
+		final StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			input.append(" line").append(i).append("\r\n");
+		}
+		final Path source = folder.newFile("crlf.txt").toPath();
+		final Path target = folder.getRoot().toPath().resolve("crlf.out");
+		final Path checkpoint = folder.getRoot().toPath()
+				.resolve("crlf.checkpoint");
+		Files.write(source, input.toString().getBytes(charset));
+		final StringWriter expected = new StringWriter();
+		pipeline.writeTo(new StringReader(input.toString()), expected);
+
+		// crash after every third checkpoint, twice
+		for (int crash = 0; crash < 2; crash++) {
+			try {
+				pipeline.writeTo(source, target, checkpoint, 1,
+						new CheckpointListener() {
+
+							private int checkpoints;
+
+							@Override
+							public void checkpoint(final Checkpoint next)
+									throws IOException {
+								if (++checkpoints == 3) {
+									throw new IOException("crash");
+								}
+							}
+
+						});
+				fail();
+			} catch (final IOException e) {
+				assertEquals("crash", e.getMessage());
+			}
+		}
+		assertEquals(20, pipeline.writeTo(source, target, checkpoint, 1));
+		assertEquals(expected.toString(), new String(
+				Files.readAllBytes(target), charset));
+	}
+
+	@Test
+	public void testResultCache() throws IOException {
+		maker.trim();
+		maker.omitLines().containing("needle");
+		final Path directory = folder.getRoot().toPath().resolve("cache");
+		final Path source = folder.newFile("cached.txt").toPath();
+		Files.write(source, " foo \nneedle\n bar\n".getBytes(Charset
+				.defaultCharset()));
+		final List<String> expected = Arrays.asList("foo", "bar");
+
+		final ResultCache cache = new ResultCache(directory, 1024);
+		assertEquals(expected, readAsList(maker.read(source, cache)));
+		assertEquals(expected, readAsList(maker.read(source, cache)));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(8, cache.getSize());
+
+		// the same mogrifiers, optimized, and other mogrifiers
+		assertEquals(expected, readAsList(maker.optimize().read(source, cache)));
+		assertEquals(2, cache.getHits());
+		maker.skipEmptyLines();
+		assertEquals(expected, readAsList(maker.read(source, cache)));
+		assertEquals(2, cache.getMisses());
+
+		// a changed file
+		Files.write(source, " baz \n".getBytes(Charset.defaultCharset()));
+		Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+		assertEquals(Arrays.asList("baz"),
+				readAsList(maker.read(source, cache)));
+		assertEquals(3, cache.getMisses());
+
+		// the order survives a restart, the least recently used is evicted
+		final ResultCache restarted = new ResultCache(directory, 10);
+		assertEquals(4, restarted.getSize());
+		assertEquals(Arrays.asList("baz"),
+				readAsList(maker.read(source, restarted)));
+		assertEquals(1, restarted.getHits());
+
+		// too large to store
+		Files.write(source, "0123456789\n".getBytes(Charset.defaultCharset()));
+		final Reader large = maker.read(source, restarted);
+		assertEquals(Arrays.asList("0123456789"), readAsList(large));
+		large.close();
+		assertEquals(4, restarted.getSize());
+		assertEquals(1, directory.toFile().list().length);
+
+		// identified by contents
+		final ResultCache hashing = new ResultCache(directory, 1024, true);
+		final Path copy = folder.newFile("copy.txt").toPath();
+		Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+		readAsList(maker.read(source, hashing));
+		readAsList(maker.read(copy, hashing));
+		assertEquals(1, hashing.getHits());
+
+		hashing.clear();
+		assertEquals(0, hashing.getSize());
+		assertEquals(0, directory.toFile().list().length);
+	}
+
+	@Test
+	public void testMetrics() throws IOException, JMException {
+		maker.trim();
+		maker.omitLines().containing("needle");
+		final PipelineStats stats = new PipelineStats();
+		final Pipeline pipeline = maker.compile(stats);
+		final String input = " foo \nneedle\n bar \n";
+
+		assertEquals(Arrays.asList("foo", "bar"),
+				readAsList(pipeline.wrap(new StringReader(input))));
+
+		assertEquals(3, stats.getLinesIn());
+		assertEquals(2, stats.getLinesOut());
+		assertEquals(2, stats.getStages().size());
+		final StageStats containing = stats
+				.getStage("ContainingPredicate [needle=needle]");
+		assertEquals(3, containing.getLinesIn());
+		assertEquals(1, containing.getLinesDropped());
+		final StageStats trim = stats.getStage("TrimFunction");
+		assertEquals(2, trim.getLinesIn());
+		assertEquals(2, trim.getLinesChanged());
+		assertEquals(10, trim.getCharsIn());
+		assertEquals(6, trim.getCharsOut());
+
+		// the byte pipeline shares the stages
+		readAsList(new InputStreamReader(pipeline.wrapStream(
+				new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8));
+		assertEquals(6, stats.getLinesIn());
+		assertEquals(2, containing.getLinesDropped());
+		assertEquals(16, containing.getBytesIn());
+
+		final ObjectName name = new ObjectName(
+				"com.platzhaltr.readr:type=PipelineStats,name=testMetrics");
+		stats.register(name);
+		try {
+			assertEquals(4L, ManagementFactory.getPlatformMBeanServer()
+					.getAttribute(name, "LinesOut"));
+		} finally {
+			stats.unregister(name);
+		}
+
+		stats.reset();
+		assertEquals(0, stats.getLinesIn());
+		assertEquals(0, containing.getLinesIn());
+
+		// rules that would be merged into an automaton and equal mogrifiers
+		// added twice keep counters of their own
+		final MogrifiedReaderMaker rules = new MogrifiedReaderMaker();
+		rules.trim();
+		rules.omitLines().containing("a");
+		rules.omitLines().containing("b");
+		rules.omitLines().containing("c");
+		rules.omitLines().containing("d");
+		rules.trim();
+		final PipelineStats ruleStats = new PipelineStats();
+		assertEquals(Arrays.asList("e"), readAsList(rules.compile(ruleStats)
+				.wrap(new StringReader(" a \n b \n d \n e \n"))));
+
+		final List<StageStats> stages = ruleStats.getStages();
+		assertEquals(6, stages.size());
+		assertEquals("TrimFunction", stages.get(0).getName());
+		assertEquals(4, stages.get(0).getLinesIn());
+		assertEquals(4, stages.get(0).getLinesChanged());
+		for (int i = 1; i < 5; i++) {
+			assertEquals(i, stages.get(i).getPosition());
+		}
+		assertEquals("ContainingPredicate [needle=d]", stages.get(1)
+				.getName());
+		assertEquals(1, stages.get(1).getLinesDropped());
+		assertEquals(0, stages.get(2).getLinesDropped());
+		assertEquals(1, stages.get(3).getLinesDropped());
+		assertEquals(1, stages.get(4).getLinesDropped());
+		assertEquals("TrimFunction", stages.get(5).getName());
+		assertEquals(1, stages.get(5).getLinesIn());
+		assertEquals(0, stages.get(5).getLinesChanged());
+	}
+
+	@Test
+	public void testAdaptivePredicateOrder() throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			builder.append(i % 3 == 0 ? "# " : "").append(i)
+					.append(i % 7 == 0 ? " needle" : "").append('\n');
+		}
+		final String input = builder.toString();
+		final String regex = ".*[a-z]+[0-9]{5}.*";
+
+		final MogrifiedReaderMaker fixed = new MogrifiedReaderMaker();
+		for (final MogrifiedReaderMaker each : Arrays.asList(fixed,
+				maker.adaptPredicateOrder())) {
+			each.omitLines().matching(regex);
+			each.omitLines().containing("needle");
+			each.omitLines().startingWith("#");
+		}
+
+		final List<String> expected = readAsList(fixed.wrap(new StringReader(
+				input)));
+		assertEquals(expected,
+				readAsList(maker.wrap(new StringReader(input))));
+		assertEquals(expected, readAsList(new InputStreamReader(maker
+				.wrapStream(new ByteArrayInputStream(input
+						.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8)));
+
+		// the regex never applies and goes last
+		final AdaptiveOrPredicate predicate = new AdaptiveOrPredicate(
+				Arrays.asList(new MatchingPredicate(regex),
+						new StartingWithPredicate("#")));
+		for (final String line : input.split("\n")) {
+			predicate.apply(line);
+		}
+		assertTrue(predicate.getOrder().get(0) instanceof StartingWithPredicate);
+	}
+
+	@Test
+	public void testOptimize() throws IOException {
+		final MogrifiedReaderMaker fixed = new MogrifiedReaderMaker();
+		for (final MogrifiedReaderMaker each : Arrays.asList(fixed,
+				maker.optimize())) {
+			each.transformLines().byReplacing("x", "x");
+			each.omitLines().startingWith(" ");
+			each.omitLines().containing("needle");
+			each.omitLines().containing("needle");
+			each.transformLines().byReplacing("foo", "baz");
+			each.transformLines().byReplacing("foo", "bar");
+			each.trim();
+			each.trim();
+		}
+		final String input = " foo needle \n  foo foo  \n\tfoo x\n fofoooo\n";
+
+		final Pipeline pipeline = maker.compile();
+		final List<String> expected = readAsList(fixed.wrap(new StringReader(
+				input)));
+		assertEquals(Arrays.asList("bar bar", "bar x", "fobaroo"), expected);
+		assertEquals(expected,
+				readAsList(pipeline.wrap(new StringReader(input))));
+		assertEquals(expected, readAsList(new InputStreamReader(pipeline
+				.wrapStream(new ByteArrayInputStream(input
+						.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8)));
+
+		final List<String> rewrites = pipeline.getRewrites();
+		assertTrue(rewrites.contains("Removed duplicate "
+				+ "ContainingPredicate [needle=needle]"));
+		assertTrue(rewrites.contains("Collapsed TrimFunction into TrimFunction"));
+		assertTrue(rewrites.contains("Removed ReplaceFunction [oldString=x, "
+				+ "newString=x] as it changes nothing"));
+		assertFalse(rewrites.contains("Moved StartingWithPredicate [prefix= ] "
+				+ "ahead of TrimFunction"));
+		assertTrue(fixed.compile().getRewrites().isEmpty());
+
+		final MogrifiedReaderMaker merged = new MogrifiedReaderMaker()
+				.optimize();
+		merged.omitLines().containing("a");
+		merged.transformLines().byReplacing("x", "x");
+		merged.omitLines().containing("b");
+		assertTrue(merged.compile().getRewrites()
+				.contains("Merged 3 groups into 1"));
+	}
+
+	@Test
+	public void testLines() throws IOException {
+		maker.trim();
+		maker.skipEmptyLines();
+
+		final Stream<String> lines = maker.lines(new StringReader(
+				" a \r\n\n b\rc"));
+
+		assertEquals(Arrays.asList("a", "b", "c"),
+				lines.collect(Collectors.toList()));
+		lines.close();
+	}
+
+	@Test
+	public void testLinesCharset() throws IOException {
+		// not idempotent, so applying the mogrifiers twice shows
+		maker.transformLines().byReplacing("a", "aa");
+		final File file = folder.newFile("utf16.txt");
+		Files.write(file.toPath(), "a\nb\n".getBytes(StandardCharsets.UTF_16));
+
+		final Stream<String> lines = maker.lines(file.toPath(),
+				StandardCharsets.UTF_16);
+		try {
+			assertEquals(Arrays.asList("aa", "b"),
+					lines.collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testLinesParallel() throws IOException {
+		final File file = newNumberedFile("lines.txt");
+
+		final List<String> expected = readAsList(parallel(maker).read(
+				file.toPath()));
+		final Stream<String> lines = parallel(new MogrifiedReaderMaker())
+				.lines(file.toPath());
+		try {
+			assertEquals(expected,
+					lines.parallel().collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	/**
+	 * Creates a file of a million numbered lines with mixed line terminators,
+	 * indented by two spaces.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private File newNumberedFile(final String name) throws IOException {
+		final File file = folder.newFile(name);
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000000; i++) {
+			builder.append("  line ").append(i)
+					.append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+		Files.write(file.toPath(),
+				builder.toString().getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	/**
+	 * Trims lines and omits every tenth line.
+	 *
+	 * @param maker
+	 *            the maker
+	 * @return the mogrified reader maker
+	 */
+	private static MogrifiedReaderMaker parallel(
+			final MogrifiedReaderMaker maker) {
+		maker.trim();
+		return maker.omitLines().endingWith("0");
+	}
+
+	/**
+	 * Omits lines with several comment prefixes and removes quote prefixes.
+	 *
+	 * @param maker
+	 *            the maker
+	 * @return the mogrified reader maker
+	 */
+	private static MogrifiedReaderMaker prefixes(
+			final MogrifiedReaderMaker maker) {
+		maker.transformLines().byRemovingPrefixes(">", "> ", "> > ");
+		maker.omitLines().startingWith("//");
+		maker.omitLines().startingWith("/*");
+		maker.omitLines().startingWith("--");
+		return maker.omitLines().startingWith(";");
+	}
+
+	/**
+	 * Omits lines containing any of several needles.
+	 *
+	 * @param maker
+	 *            the maker
+	 * @return the mogrified reader maker
+	 */
+	private static MogrifiedReaderMaker omitManyNeedles(
+			final MogrifiedReaderMaker maker) {
+		maker.omitLines().containing("she");
+		maker.omitLines().containing("his");
+		maker.omitLines().containing("hers");
+		maker.omitLines().containing("\u00e4h");
+		return maker.omitLines().startingWith("#");
+	}
+
+	/**
+	 * Omits lines matching any of several regular expressions, one of them
+	 * using a back reference.
+	 *
+	 * @param maker
+	 *            the maker
+	 * @return the mogrified reader maker
+	 */
+	private static MogrifiedReaderMaker omitManyPatterns(
+			final MogrifiedReaderMaker maker) {
+		maker.omitLines().matching("a+b");
+		maker.omitLines().matching("\\d{2}:\\d{2}");
+		maker.omitLines().matching("(\\w+) \\1");
+		return maker.omitLines().matching("(?:INFO|DEBUG) .*");
+	}
+
 	/**
 	 * Gets the file.
 	 *